@@ -0,0 +1,474 @@
+package cli;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import util.DataFileParser;
+import dlx.DLX;
+import dlx.DLXConfig;
+import dlx.DLXPuzzle;
+
+/**
+ * Headless Batch Runner
+ *
+ * Solves every puzzle of directories, glob patterns and zip files on a pool
+ * of worker threads. Each puzzle runs on its own DLX instance with a
+ * timeout and a node budget, checked between quanta of search nodes, and a
+ * failure of one puzzle is reported without affecting the others. One
+ * report line per puzzle is written in input order, as JSON lines or CSV.
+ *
+ * Usage: BatchRunner [options] (dir | glob | file.zip | file)...
+ *   -threads N     worker threads (default: number of processors)
+ *   -timeout S     seconds per puzzle, 0 for none (default 60)
+ *   -nodes N       search nodes per puzzle, 0 for none (default 0)
+ *   -spin, -flip   allow spin / spin and flip of tiles
+ *   -nosymmetry    keep symmetric solutions
+ *   -format F      json or csv (default json)
+ *   -heuristics H  comma separated column heuristics (see
+ *                  DLXColumnHeuristic); every puzzle runs once per
+ *                  heuristic, which gives a benchmark matrix
+ *   -order O       order of the rows tried (see DLXValueOrder)
+ *   -out FILE      report file (default: standard output)
+ *
+ * @author Deyuan Guo, Dawei Fan
+ */
+public class BatchRunner {
+
+	/******************** Public Member Variables ********************/
+
+	/** Report states */
+	public static final String OK = "ok";
+	public static final String TIMEOUT = "timeout";
+	public static final String NODE_LIMIT = "node-limit";
+	public static final String ERROR = "error";
+
+	/**
+	 * Report record of one puzzle.
+	 */
+	public static class Report {
+		public String name;
+		/** The column heuristic, null for the default */
+		public String heuristic;
+		public String status;
+		public long solutions;
+		public long nodes;
+		/** -1 if no solution is found */
+		public double firstMillis = -1;
+		public double preprocessMillis;
+		public double totalMillis;
+		public String error;
+
+		public String toJson() {
+			StringBuilder sb = new StringBuilder();
+			sb.append("{\"name\":\"").append(escape(name)).append('"');
+			if (heuristic != null)
+				sb.append(",\"heuristic\":\"").append(heuristic).append('"');
+			sb.append(",\"status\":\"").append(status).append('"');
+			sb.append(",\"solutions\":").append(solutions);
+			sb.append(",\"nodes\":").append(nodes);
+			sb.append(",\"firstMillis\":").append(round(firstMillis));
+			sb.append(",\"preprocessMillis\":").append(round(preprocessMillis));
+			sb.append(",\"totalMillis\":").append(round(totalMillis));
+			if (error != null)
+				sb.append(",\"error\":\"").append(escape(error)).append('"');
+			return sb.append('}').toString();
+		}
+
+		public static String csvHeader() {
+			return "name,heuristic,status,solutions,nodes,firstMillis,"
+					+ "preprocessMillis,totalMillis,error";
+		}
+
+		public String toCsv() {
+			return csv(name) + "," + (heuristic != null ? heuristic : "")
+					+ "," + status + "," + solutions + "," + nodes
+					+ "," + round(firstMillis) + "," + round(preprocessMillis)
+					+ "," + round(totalMillis) + ","
+					+ (error != null ? csv(error) : "");
+		}
+	}
+
+	/******************** Private Member Variables ********************/
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/** Search nodes between two timeout checks */
+	private static final long QUANTUM = 20000;
+
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private long timeoutMillis = 60000;
+	private long nodeBudget = 0;
+	private boolean spin = false;
+	private boolean flip = false;
+	private boolean symmetry = true;
+	private List<String> heuristics = null;
+	private String order = null;
+
+	/******************** Public Member Functions ********************/
+
+	public void setThreads(int n) { threads = Math.max(1, n); }
+	public void setTimeoutMillis(long t) { timeoutMillis = t; }
+	public void setNodeBudget(long n) { nodeBudget = n; }
+	public void setEnableSpin(boolean b) { spin = b; }
+	public void setEnableSpinFlip(boolean b) { flip = b; }
+	public void setEliminateSymmetry(boolean b) { symmetry = b; }
+	/**
+	 * Set the column heuristics each puzzle is run with.
+	 * @param h - names of built-in heuristics
+	 * @throws IllegalArgumentException on an unknown name
+	 */
+	public void setHeuristics(List<String> h) {
+		DLXConfig check = new DLXConfig();
+		for (String name: h) check.setColumnHeuristic(name);
+		heuristics = h;
+	}
+
+	/**
+	 * Set the value order of the searches.
+	 * @param o - the name of a built-in order
+	 * @throws IllegalArgumentException on an unknown name
+	 */
+	public void setValueOrder(String o) {
+		new DLXConfig().setValueOrder(o);
+		order = o;
+	}
+
+	/**
+	 * A puzzle to run: its name and a way to read its text.
+	 */
+	public interface Source {
+		String name();
+		String read() throws IOException;
+	}
+
+	/**
+	 * Collect the puzzles of a directory (recursively), a glob pattern, a
+	 * zip file or a single puzzle file.
+	 * @param arg
+	 * @return the sources in name order
+	 * @throws IOException
+	 */
+	public static List<Source> collect(String arg) throws IOException {
+		final List<Source> sources = new ArrayList<Source>();
+		File f = new File(arg);
+		if (f.isDirectory()) {
+			walk(f.toPath(), null, sources);
+		} else if (f.isFile() && arg.toLowerCase().endsWith(".zip")) {
+			readZip(f, sources);
+		} else if (f.isFile()) {
+			sources.add(fileSource(f.toPath()));
+		} else if (isGlob(arg)) {
+			/* Walk from the longest directory prefix without wildcards. */
+			String norm = arg.replace(File.separatorChar, '/');
+			int cut = norm.length();
+			for (String c: new String[] {"*", "?", "[", "{"}) {
+				int i = norm.indexOf(c);
+				if (i >= 0 && i < cut) cut = i;
+			}
+			int slash = norm.lastIndexOf('/', cut);
+			String base = slash >= 0 ? norm.substring(0, slash + 1) : ".";
+			PathMatcher m = FileSystems.getDefault().getPathMatcher(
+					"glob:" + (slash >= 0 ? norm : "./" + norm));
+			walk(Paths.get(base), m, sources);
+		} else {
+			throw new IOException("No such puzzle, directory or zip: " + arg);
+		}
+		return sources;
+	}
+
+	/**
+	 * Run all puzzles and write one report line per puzzle, in input order.
+	 * @param sources
+	 * @param out
+	 * @param csv - CSV instead of JSON lines
+	 * @return the reports
+	 */
+	public List<Report> run(List<Source> sources, PrintWriter out,
+			boolean csv) {
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<Future<Report>> futures = new ArrayList<Future<Report>>();
+		final List<Source> runs = new ArrayList<Source>();
+		List<String> hs = heuristics != null ? heuristics
+				: Collections.<String>singletonList(null);
+		for (final Source s: sources) {
+			for (final String h: hs) {
+				runs.add(s);
+				futures.add(pool.submit(new Callable<Report>() {
+					@Override
+					public Report call() {
+						return runOne(s, h);
+					}
+				}));
+			}
+		}
+		pool.shutdown();
+
+		List<Report> reports = new ArrayList<Report>();
+		if (csv) out.println(Report.csvHeader());
+		for (int i = 0; i < futures.size(); i++) {
+			Report r;
+			try {
+				r = futures.get(i).get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				pool.shutdownNow();
+				break;
+			} catch (ExecutionException e) {
+				/* Errors other than RuntimeException, e.g. OutOfMemoryError */
+				r = new Report();
+				r.name = runs.get(i).name();
+				r.status = ERROR;
+				r.error = String.valueOf(e.getCause());
+			}
+			reports.add(r);
+			out.println(csv ? r.toCsv() : r.toJson());
+			out.flush();
+		}
+		return reports;
+	}
+
+	/**
+	 * Solve one puzzle within the timeout and node budget.
+	 * @param s
+	 * @return
+	 */
+	public Report runOne(Source s) {
+		return runOne(s, null);
+	}
+
+	/**
+	 * Solve one puzzle within the timeout and node budget.
+	 * @param s
+	 * @param heuristic - the name of the column heuristic, null for the
+	 * default
+	 * @return
+	 */
+	public Report runOne(Source s, String heuristic) {
+		Report r = new Report();
+		r.name = s.name();
+		r.heuristic = heuristic;
+		long start = System.nanoTime();
+		long deadline = timeoutMillis > 0
+				? start + timeoutMillis * 1000000L : Long.MAX_VALUE;
+		try {
+			DLX dlx = new DLX(DLXPuzzle.fromText(s.read()));
+			dlx.Config.setEnableSpin(spin || flip);
+			dlx.Config.setEnableSpinFlip(flip);
+			dlx.Config.setEliminateSymmetry(symmetry);
+			if (heuristic != null) dlx.Config.setColumnHeuristic(heuristic);
+			if (order != null) dlx.Config.setValueOrder(order);
+			/* Only the count is reported. */
+			dlx.setKeepSolutions(false);
+			dlx.preProcess();
+			r.preprocessMillis = millis(start);
+
+			r.status = OK;
+			while (!dlx.isSearchFinished()) {
+				if (System.nanoTime() > deadline) {
+					r.status = TIMEOUT;
+					break;
+				}
+				long quantum = QUANTUM;
+				if (nodeBudget > 0) {
+					long left = nodeBudget - dlx.getNodes();
+					if (left <= 0) {
+						r.status = NODE_LIMIT;
+						break;
+					}
+					quantum = Math.min(quantum, left);
+				}
+				if (dlx.nextSolution(quantum) != null) {
+					if (r.solutions == 0) r.firstMillis = millis(start);
+					r.solutions++;
+				}
+			}
+			r.nodes = dlx.getNodes();
+		} catch (IOException e) {
+			r.status = ERROR;
+			r.error = e.getMessage();
+		} catch (RuntimeException e) {
+			r.status = ERROR;
+			r.error = String.valueOf(e);
+		}
+		r.totalMillis = millis(start);
+		return r;
+	}
+
+	/******************** Private Member Functions ********************/
+
+	private static void walk(Path root, final PathMatcher m,
+			final List<Source> sources) throws IOException {
+		final List<Path> files = new ArrayList<Path>();
+		Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path p, BasicFileAttributes a) {
+				if (a.isRegularFile() && (m == null || m.matches(p)))
+					files.add(p);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		Collections.sort(files);
+		for (Path p: files) {
+			if (p.toString().toLowerCase().endsWith(".zip"))
+				readZip(p.toFile(), sources);
+			else
+				sources.add(fileSource(p));
+		}
+	}
+
+	private static Source fileSource(final Path p) {
+		return new Source() {
+			@Override
+			public String name() { return p.toString(); }
+			@Override
+			public String read() throws IOException {
+				String text = DataFileParser.readPuzzleText(p.toString());
+				if (text == null) throw new IOException("Cannot read " + p);
+				return text;
+			}
+		};
+	}
+
+	/**
+	 * Read all entries of a zip file into memory; puzzles are small.
+	 * @param f
+	 * @param sources
+	 * @throws IOException
+	 */
+	private static void readZip(File f, List<Source> sources)
+			throws IOException {
+		ZipFile zip = new ZipFile(f);
+		try {
+			List<String> names = new ArrayList<String>();
+			for (Enumeration<? extends ZipEntry> e = zip.entries();
+					e.hasMoreElements();) {
+				ZipEntry z = e.nextElement();
+				if (!z.isDirectory()) names.add(z.getName());
+			}
+			Collections.sort(names);
+			for (String n: names) {
+				BufferedReader br = new BufferedReader(new InputStreamReader(
+						zip.getInputStream(zip.getEntry(n)), UTF8));
+				StringBuilder sb = new StringBuilder();
+				String line;
+				while ((line = br.readLine()) != null)
+					sb.append(line).append('\n');
+				br.close();
+				final String name = f.getPath() + "!" + n;
+				final String text = sb.toString();
+				sources.add(new Source() {
+					@Override
+					public String name() { return name; }
+					@Override
+					public String read() { return text; }
+				});
+			}
+		} finally {
+			zip.close();
+		}
+	}
+
+	private static boolean isGlob(String s) {
+		return s.indexOf('*') >= 0 || s.indexOf('?') >= 0
+				|| s.indexOf('[') >= 0 || s.indexOf('{') >= 0;
+	}
+
+	private static double millis(long start) {
+		return (System.nanoTime() - start) / 1000000.0;
+	}
+
+	private static String round(double ms) {
+		return ms < 0 ? "-1" : String.format("%.3f", ms);
+	}
+
+	private static String escape(String s) {
+		return s.replace("\\", "\\\\").replace("\"", "\\\"")
+				.replace("\n", "\\n").replace("\r", "\\r");
+	}
+
+	private static String csv(String s) {
+		if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0)
+			return s;
+		return "\"" + s.replace("\"", "\"\"") + "\"";
+	}
+
+	private static boolean parseCsv(String f) {
+		if (f.equals("csv")) return true;
+		if (f.equals("json")) return false;
+		throw new IllegalArgumentException("Unknown format " + f);
+	}
+
+	private static void usage() {
+		System.err.println("Usage: BatchRunner [-threads N] [-timeout S] "
+				+ "[-nodes N] [-spin] [-flip] [-nosymmetry] "
+				+ "[-format json|csv] [-heuristics H,...] [-order O] [-out FILE] "
+				+ "(dir|glob|zip|file)...");
+	}
+
+	public static void main(String args[]) throws IOException {
+		BatchRunner runner = new BatchRunner();
+		boolean csv = false;
+		String outFile = null;
+		List<Source> sources = new ArrayList<Source>();
+		try {
+			for (int i = 0; i < args.length; i++) {
+				String a = args[i];
+				if (a.equals("-threads")) runner.setThreads(Integer.parseInt(args[++i]));
+				else if (a.equals("-timeout")) runner.setTimeoutMillis((long) (Double.parseDouble(args[++i]) * 1000));
+				else if (a.equals("-nodes")) runner.setNodeBudget(Long.parseLong(args[++i]));
+				else if (a.equals("-spin")) runner.setEnableSpin(true);
+				else if (a.equals("-flip")) runner.setEnableSpinFlip(true);
+				else if (a.equals("-nosymmetry")) runner.setEliminateSymmetry(false);
+				else if (a.equals("-format")) csv = parseCsv(args[++i]);
+				else if (a.equals("-heuristics")) runner.setHeuristics(Arrays.asList(args[++i].split(",")));
+				else if (a.equals("-order")) runner.setValueOrder(args[++i]);
+				else if (a.equals("-out")) outFile = args[++i];
+				else if (a.startsWith("-")) throw new IllegalArgumentException("Unknown option " + a);
+				else sources.addAll(collect(a));
+			}
+		} catch (RuntimeException e) {
+			System.err.println(e.getMessage() != null ? e.getMessage() : e.toString());
+			usage();
+			System.exit(2);
+		}
+		if (sources.isEmpty()) {
+			usage();
+			System.exit(2);
+		}
+
+		PrintWriter out = outFile == null
+				? new PrintWriter(new OutputStreamWriter(System.out, UTF8))
+				: new PrintWriter(new OutputStreamWriter(
+						new FileOutputStream(outFile), UTF8));
+		runner.run(sources, out, csv);
+		if (outFile != null) out.close();
+		else out.flush();
+	}
+
+}
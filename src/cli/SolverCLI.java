@@ -0,0 +1,364 @@
+package cli;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import util.DataFileParser;
+import dlx.DLX;
+import dlx.DLXConfig;
+import dlx.DLXOffHeapLinks;
+import dlx.DLXOffHeapSearch;
+import dlx.DLXPortfolio;
+import dlx.DLXPuzzle;
+import dlx.DLXSymmetry;
+
+/**
+ * Command-line Solver
+ *
+ * Solves one puzzle file, or the puzzle read from standard input, without
+ * the GUI.
+ *
+ * Usage: SolverCLI [options] [puzzle file | -]
+ *   -spin, -flip    allow spin / spin and flip of tiles
+ *   -nosymmetry     keep symmetric solutions
+ *   -noduplica      keep solutions which only differ in identical tiles
+ *   -count          only print the number of solutions (default)
+ *   -first N        print the first N solutions
+ *   -all            print all solutions
+ *   -threads N      search threads (default: number of processors)
+ *   -format F       text (board of tile ids) or json (placements per line)
+ *   -offheap        keep the links in direct memory, for very large puzzles
+ *   -lookahead      drop rows whose cover would empty another column
+ *   -patterns N     check cut off regions up to N cells against a table of
+ *                   tileable shapes (-1: twice the largest tile)
+ *   -cut            count narrow boards from both ends towards a cut
+ *   -heuristic H    column heuristic: min-size (default), leftmost,
+ *                   first-cell, fewest-neighbours, cells-first
+ *   -order O        order of the rows tried: natural (default),
+ *                   least-constraining, walls-first
+ *   -portfolio N    find the first solution with N randomized searches
+ *                   with restarts; the winner is reported on stderr
+ *   -seed S         portfolio seed (default 1)
+ *   -replay W       run worker W of the portfolio with the seed alone
+ *
+ * With more than one thread the first level choices of the search are split
+ * into slices which are searched in parallel, each by its own DLX instance
+ * on the shared puzzle. Searches which eliminate symmetric solutions by
+ * comparing solution views, and -first N, run on one thread. So does
+ * -offheap, which does not compare solution views either.
+ *
+ * @author Deyuan Guo, Dawei Fan
+ */
+public class SolverCLI {
+
+	/******************** Private Member Variables ********************/
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/** Output modes */
+	private static final int COUNT = 0;
+	private static final int FIRST = 1;
+	private static final int ALL = 2;
+
+	/** Slices per thread, for balancing uneven first level branches */
+	private static final int SLICES_PER_THREAD = 4;
+
+	private boolean spin = false;
+	private boolean flip = false;
+	private boolean symmetry = true;
+	private boolean duplica = true;
+	private int mode = COUNT;
+	private long first = 1;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private boolean json = false;
+	private boolean offHeap = false;
+	private boolean lookahead = false;
+	private int patterns = 0;
+	private boolean cut = false;
+	private String heuristic = null;
+	private String order = null;
+	private int portfolio = 0;
+	private long seed = 1;
+	private int replay = -1;
+
+	private DLXPuzzle puzzle = null;
+	private PrintWriter out = null;
+
+	/** Solutions printed so far */
+	private long printed = 0;
+
+	/******************** Public Member Functions ********************/
+
+	public static void main(String args[]) {
+		SolverCLI cli = new SolverCLI();
+		String path = null;
+		try {
+			for (int i = 0; i < args.length; i++) {
+				String a = args[i];
+				if (a.equals("-spin")) cli.spin = true;
+				else if (a.equals("-flip")) cli.flip = true;
+				else if (a.equals("-nosymmetry")) cli.symmetry = false;
+				else if (a.equals("-noduplica")) cli.duplica = false;
+				else if (a.equals("-count")) cli.mode = COUNT;
+				else if (a.equals("-all")) cli.mode = ALL;
+				else if (a.equals("-first")) {
+					cli.mode = FIRST;
+					cli.first = Long.parseLong(args[++i]);
+				}
+				else if (a.equals("-threads")) cli.threads = Math.max(1, Integer.parseInt(args[++i]));
+				else if (a.equals("-format")) cli.json = parseFormat(args[++i]);
+				else if (a.equals("-offheap")) cli.offHeap = true;
+				else if (a.equals("-lookahead")) cli.lookahead = true;
+				else if (a.equals("-patterns")) cli.patterns = Integer.parseInt(args[++i]);
+				else if (a.equals("-cut")) cli.cut = true;
+				else if (a.equals("-heuristic")) {
+					cli.heuristic = args[++i];
+					/* Fail here on an unknown name */
+					new DLXConfig().setColumnHeuristic(cli.heuristic);
+				}
+				else if (a.equals("-portfolio")) cli.portfolio = Math.max(1, Integer.parseInt(args[++i]));
+				else if (a.equals("-seed")) cli.seed = Long.parseLong(args[++i]);
+				else if (a.equals("-replay")) cli.replay = Integer.parseInt(args[++i]);
+				else if (a.equals("-order")) {
+					cli.order = args[++i];
+					new DLXConfig().setValueOrder(cli.order);
+				}
+				else if (a.equals("-h") || a.equals("-help")) {
+					usage();
+					return;
+				}
+				else if (a.startsWith("-") && !a.equals("-"))
+					throw new IllegalArgumentException("Unknown option " + a);
+				else if (path != null)
+					throw new IllegalArgumentException("Only one puzzle is solved at a time");
+				else path = a;
+			}
+		} catch (RuntimeException e) {
+			System.err.println(e.getMessage() != null ? e.getMessage() : e.toString());
+			usage();
+			System.exit(2);
+		}
+
+		String text;
+		try {
+			text = (path == null || path.equals("-"))
+					? readStdin() : DataFileParser.readPuzzleText(path);
+		} catch (IOException e) {
+			text = null;
+		}
+		if (text == null || text.trim().isEmpty()) {
+			System.err.println("Cannot read a puzzle from "
+					+ (path == null ? "standard input" : path));
+			System.exit(1);
+		}
+
+		cli.puzzle = DLXPuzzle.fromText(text);
+		cli.out = new PrintWriter(new OutputStreamWriter(System.out, UTF8));
+		long n = cli.solve();
+		if (cli.mode == COUNT || !cli.json) cli.out.println(n);
+		cli.out.flush();
+	}
+
+	/******************** Private Member Functions ********************/
+
+	/**
+	 * Solve the puzzle in the selected mode.
+	 * @return the number of solutions found
+	 */
+	private long solve() {
+		if (offHeap) return solveOffHeap();
+		if (portfolio > 0 || replay >= 0) return solvePortfolio();
+		DLX dlx = newDLX();
+		if (mode == FIRST || threads == 1 || dlx.needsSolutionViews()) {
+			return solveSlice(dlx);
+		}
+
+		/* Parallel search over slices of the first level choices. Each
+		 * slice builds its links when it starts, so only the running slices
+		 * hold a copy. */
+		final int slices = threads * SLICES_PER_THREAD;
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<Future<Long>> futures = new ArrayList<Future<Long>>();
+		dlx.setFirstLevelSlice(0, slices);
+		final DLX first = dlx;
+		for (int i = 0; i < slices; i++) {
+			final int slice = i;
+			futures.add(pool.submit(new Callable<Long>() {
+				@Override
+				public Long call() {
+					DLX d = first;
+					if (slice > 0) {
+						d = newDLX();
+						d.setFirstLevelSlice(slice, slices);
+					}
+					return solveSlice(d);
+				}
+			}));
+		}
+		pool.shutdown();
+		long n = 0;
+		try {
+			for (Future<Long> f: futures) n += f.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+		return n;
+	}
+
+	/**
+	 * Find the first solution with a DLXPortfolio, or replay one worker.
+	 * @return the number of solutions found, 0 or 1
+	 */
+	private long solvePortfolio() {
+		DLXConfig options = new DLXConfig();
+		options.setPuzzle(puzzle);
+		configure(options);
+		DLXPortfolio p = new DLXPortfolio(puzzle, options);
+		p.setWorkers(portfolio);
+		DLXPortfolio.Result r = replay >= 0 ? p.replay(seed, replay)
+				: p.solve(seed);
+		System.err.println("Portfolio: " + r);
+		if (r.solution == null) return 0;
+		print(r.solution, new DLXSymmetry(options));
+		return 1;
+	}
+
+	/**
+	 * Solve on off-heap links with a single search.
+	 * @return the number of solutions found
+	 */
+	private long solveOffHeap() {
+		DLXConfig config = new DLXConfig();
+		config.verb = false;
+		config.setPuzzle(puzzle);
+		config.setEnableSpin(spin || flip);
+		config.setEnableSpinFlip(flip);
+		config.setEliminateSymmetry(symmetry);
+		config.setEnableEliminateDuplica(duplica);
+		config.autoSetEliminateDuplica();
+
+		DLXOffHeapLinks links = DLXOffHeapLinks.build(puzzle.board(),
+				puzzle.tiles(), config);
+		DLXOffHeapSearch search = new DLXOffHeapSearch(links, config);
+		if (search.needsSolutionViews()) {
+			System.err.println("Warning: symmetric solutions of this board "
+					+ "are not eliminated with -offheap");
+		}
+		long n = 0;
+		try {
+			if (mode == COUNT) return search.countSolutions();
+			DLXSymmetry view = new DLXSymmetry(config);
+			while ((mode != FIRST || n < first)
+					&& search.nextSolution() != null) {
+				n++;
+				print(search.lastSolutionPositions(), view);
+			}
+		} finally {
+			links.close();
+		}
+		return n;
+	}
+
+	private DLX newDLX() {
+		DLX dlx = new DLX(puzzle);
+		configure(dlx.Config);
+		dlx.preProcess();
+		return dlx;
+	}
+
+	/**
+	 * Apply the search options to a configuration.
+	 * @param c
+	 */
+	private void configure(DLXConfig c) {
+		c.setEnableSpin(spin || flip);
+		c.setEnableSpinFlip(flip);
+		c.setEliminateSymmetry(symmetry);
+		c.setEnableEliminateDuplica(duplica);
+		c.setEnableLookahead(lookahead);
+		c.setDeadPatternSize(patterns);
+		c.setEnableProfileCut(cut);
+		if (heuristic != null) c.setColumnHeuristic(heuristic);
+		if (order != null) c.setValueOrder(order);
+	}
+
+	/**
+	 * Search one DLX instance and print its solutions if requested.
+	 * @param dlx
+	 * @return the number of solutions
+	 */
+	private long solveSlice(DLX dlx) {
+		if (mode == COUNT) return dlx.countSolutions();
+
+		DLXSymmetry view = new DLXSymmetry(dlx.Config);
+		long n = 0;
+		List<List<Integer>> sol;
+		while ((mode != FIRST || n < first)
+				&& (sol = dlx.nextSolution()) != null) {
+			n++;
+			dlx.getSolutions().clear();
+			print(sol, view);
+		}
+		return n;
+	}
+
+	private synchronized void print(List<List<Integer>> sol, DLXSymmetry s) {
+		printed++;
+		if (json) {
+			StringBuilder sb = new StringBuilder("[");
+			for (int i = 0; i < sol.size(); i++) {
+				if (i > 0) sb.append(',');
+				sb.append(sol.get(i).toString().replace(" ", ""));
+			}
+			out.println(sb.append(']'));
+		} else {
+			out.println("Solution " + printed + ":");
+			for (int[] row: s.solutionView(sol)) {
+				StringBuilder sb = new StringBuilder();
+				for (int t: row) {
+					if (sb.length() > 0) sb.append(' ');
+					sb.append(t < 0 ? "." : Integer.toString(t));
+				}
+				out.println(sb);
+			}
+			out.println();
+		}
+	}
+
+	private static boolean parseFormat(String f) {
+		if (f.equals("json")) return true;
+		if (f.equals("text")) return false;
+		throw new IllegalArgumentException("Unknown format " + f);
+	}
+
+	private static String readStdin() throws IOException {
+		BufferedReader br = new BufferedReader(
+				new InputStreamReader(System.in, UTF8));
+		StringBuilder sb = new StringBuilder();
+		String line;
+		while ((line = br.readLine()) != null) sb.append(line).append('\n');
+		return sb.toString();
+	}
+
+	private static void usage() {
+		System.err.println("Usage: SolverCLI [-spin] [-flip] [-nosymmetry] "
+				+ "[-noduplica] [-count | -first N | -all] [-threads N] "
+				+ "[-format text|json] [-offheap] [-lookahead] [-patterns N] "
+				+ "[-cut] [-heuristic H] [-order O] [-portfolio N] [-seed S] "
+				+ "[-replay W] [puzzle file | -]");
+	}
+
+}
@@ -3,6 +3,8 @@ package dlx;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -14,6 +16,10 @@ import util.Tile;
  * Class DLX. Public interface by Main or GUI.
  * @author Deyuan Guo, Dawei Fan
  *
+ * @version 2.2 Puzzle facts are kept in an immutable DLXPuzzle which can be
+ *          shared by DLX instances on different threads, search flags in
+ *          DLXSearchState, and DLXSymmetry is no longer static.
+ *
  * @version 2.1 Support eliminating duplicated solutions caused by identical
  *          tiles. 11/29/2014
  *
@@ -41,8 +47,10 @@ public class DLX {
 
 	/******************** Private Member Variables ********************/
 
+	private DLXPuzzle puzzle = null;
 	private Tile board = null;
 	private List<Tile> tiles = null;
+	private DLXSymmetry symmetry = null;
 	private DLXBasicExactCoverArray basicECA = null;
 	private DLXBasicLinksArray basicDLA = null;
 	private DLXBasicSearch basicSearch = null;
@@ -52,54 +60,86 @@ public class DLX {
 
 	private boolean isSolutionSymmetric = false;
 
+	/** Keep the found solutions in Solutions, see setKeepSolutions() */
+	private boolean keepSolutions = true;
+
+	/** The preprocess cache and the puzzle text for computing cache keys */
+	private DLXCache cache = null;
+	private String puzzleText = null;
+
+	/** Leader tile of each orientation mask, when loaded from the cache */
+	private int[] cachedLeaders = null;
+
 	/******************** Public Member Functions ********************/
 
 	/**
 	 * Constructor of DLX.
 	 */
 	public DLX(Tile b, List<Tile> t) {
-		board = b;
-		tiles = t;
+		this(new DLXPuzzle(b, t));
+	}
+
+	public DLX(String puzzleFilePath) {
+		this(DLXPuzzle.fromFile(puzzleFilePath));
+	}
+
+	/**
+	 * Constructor of DLX on a shared puzzle. Each instance has its own
+	 * configuration, links and search state, so instances on the same
+	 * puzzle can be solved concurrently.
+	 */
+	public DLX(DLXPuzzle p) {
+		puzzle = p;
+		board = p.board();
+		tiles = p.tiles();
 		Config = new DLXConfig();
-		Config.board = b;
-		Config.tiles = t;
+		Config.setPuzzle(p);
 		Config.verb = false;
-		Config.recognizeDuplica(tiles);
-		DLXSymmetry.Config = Config;
+		symmetry = new DLXSymmetry(Config);
 	}
 
-	public DLX(String puzzleFilePath) {
-		DataFileParser dfp = new DataFileParser(puzzleFilePath);
-		/* Extract puzzle pieces, board are included in this list. */
-		tiles = dfp.ExtractTiles();
-		/* Get the board and the remained is tileList. */
-		board = tiles.get(0);
-		tiles.remove(0);
+	/**
+	 * Constructor of DLX with a preprocess cache. The puzzle file is parsed
+	 * by preProcess for the board and the tiles; the rows are only
+	 * generated when the cache misses.
+	 */
+	public DLX(String puzzleFilePath, DLXCache c) {
+		puzzleText = DataFileParser.readPuzzleText(puzzleFilePath);
+		if (puzzleText == null) puzzleText = "";
+		cache = c;
 
 		Config = new DLXConfig();
-		Config.board = board;
-		Config.tiles = tiles;
 		Config.verb = false;
-		Config.recognizeDuplica(tiles);
-		DLXSymmetry.Config = Config;
+		symmetry = new DLXSymmetry(Config);
 	}
 
 	/**
-	 * DLX instance can be configured before calling preProcess
+	 * DLX instance can be configured before calling preProcess. The links
+	 * are built once for all spins and flips; later calls only roll back the
+	 * search and mask the rows for the current spin/flip configuration.
 	 */
 	public void preProcess() {
-		if (Config.verb) {
-			board.printTile();
-			for (Tile t: tiles) t.printTile();
+		if (basicDLA != null) {
+			basicSearch.reset();
+		} else if (cache != null) {
+			preProcessCached();
+		} else {
+			if (Config.verb) {
+				board.printTile();
+				for (Tile t: tiles) t.printTile();
+			}
+			buildLinks();
 		}
 
 		Config.autoSetEliminateDuplica();
 		Solutions = new ArrayList<List<List<Integer>>>();
 		ViewList = new ArrayList<int[][]>();
 
-		basicECA = new DLXBasicExactCoverArray(board, tiles, Config);
-		basicDLA = new DLXBasicLinksArray(basicECA, Config);
-		basicSearch = new DLXBasicSearch(basicDLA, Config);
+		int mask = Config.orientationMask();
+		basicDLA.setOrientationMask(mask);
+		if (cachedLeaders != null) Config.setLeaderId(cachedLeaders[mask]);
+		else basicDLA.chooseLeaderTile();
+		basicSearch.prepare();
 	}
 
 	/**
@@ -108,34 +148,27 @@ public class DLX {
 	 */
 	public List<List<Integer>> nextSolution() {
 		List<List<Integer>> solution = basicSearch.solveSingleSolution();
-		if (solution != null) {
-			/* Check if the solution is a unique solution. */
-			if (Config.eliminateSymmetry() && board.sfpattern.size() != 8
-					&& !Config.symmetryEliminatedByLeader()) {
-				int view[][] = DLXSymmetry.solutionView(solution);
-				if (ViewList.size() == 0) {
-					Solutions.add(solution);
-					ViewList.add(view);
-				} else {
-					/* Remove symmetry. */
-					while (!DLXSymmetry.isAsymmetricList(view, ViewList)) {
-						solution = basicSearch.solveSingleSolution();
-						if (solution != null)
-							view = DLXSymmetry.solutionView(solution);
-						else break;
-					}
-					if (solution != null) {
-						Solutions.add(solution);
-						ViewList.add(view);
-					}
-				}
-			} else { //don't remove symmetry
-				Solutions.add(solution);
-			}
+		/* Remove symmetry. */
+		while (solution != null && !addUniqueSolution(solution)) {
+			solution = basicSearch.solveSingleSolution();
 		}
 		return solution;
 	}
 
+	/**
+	 * Solve for at most a given number of search nodes, so that the search
+	 * can be time sliced. The search resumes where it paused on the next
+	 * call.
+	 * @param quantum - the number of rows to try at most
+	 * @return a valid solution if one is found within the budget, otherwise
+	 * null; isSearchFinished() tells if there are more solutions.
+	 */
+	public List<List<Integer>> nextSolution(long quantum) {
+		List<List<Integer>> solution = basicSearch.solveNodes(quantum);
+		if (solution != null && !addUniqueSolution(solution)) return null;
+		return solution;
+	}
+
 	/**
 	 * Solve with only a single step search.
 	 * @return a partial solution
@@ -145,25 +178,7 @@ public class DLX {
 		List<List<Integer>> step = basicSearch.solveSingleStep();
 
 		if (isCompleteSolution()) {
-			/* Check if the solution is a unique solution. */
-			if (Config.eliminateSymmetry() && board.sfpattern.size() != 8
-					&& !Config.symmetryEliminatedByLeader()) {
-				int view[][] = DLXSymmetry.solutionView(step);
-				if (ViewList.size() == 0) {
-					Solutions.add(step);
-					ViewList.add(view);
-				} else {
-					/* Remove symmetry. */
-					if (DLXSymmetry.isAsymmetricList(view, ViewList)) {
-						Solutions.add(step);
-						ViewList.add(view);
-					} else {
-						isSolutionSymmetric = true;
-					}
-				}
-			} else { //don't remove symmetry
-				Solutions.add(step);
-			}
+			isSolutionSymmetric = !addUniqueSolution(step);
 		}
 		return step;
 	}
@@ -192,16 +207,140 @@ public class DLX {
 		return Solutions;
 	}
 
+	/**
+	 * Count the remaining solutions without keeping them.
+	 * @return
+	 */
+	public long countSolutions() {
+		if (Config.isEnableProfile()) {
+			long n = basicSearch.countByProfile();
+			if (n >= 0) return n;
+		}
+		if (Config.isEnableComponents()) {
+			long n = basicSearch.countByComponents();
+			if (n >= 0) return n;
+		}
+		long n = 0;
+		while (nextSolution() != null) {
+			n++;
+			Solutions.clear();
+		}
+		return n;
+	}
+
+	/**
+	 * Restrict the search to slice index of count slices of the first level
+	 * choices; the slices partition the solutions, so they can be searched
+	 * by several DLX instances on the same puzzle in parallel. Call after
+	 * preProcess(). Symmetric solutions are only eliminated across slices
+	 * when the leader tile does it (see needsSolutionViews()).
+	 * @param index
+	 * @param count
+	 */
+	public void setFirstLevelSlice(int index, int count) {
+		basicSearch.setFirstLevelSlice(index, count);
+	}
+
+	/**
+	 * Determine if symmetric solutions are eliminated by comparing with the
+	 * views of earlier solutions, which needs a single search over all
+	 * solutions. Call after preProcess().
+	 * @return
+	 */
+	public boolean needsSolutionViews() {
+		return Config.eliminateSymmetry() && board.sfpattern.size() != 8
+				&& (Config.isEnableExtra() || Config.getLeaderId() < 0);
+	}
+
+	/**
+	 * Count the solutions of the fixed, spin and spin/flip configurations
+	 * in a single search on the spin/flip links. Duplicated tiles are
+	 * eliminated for each configuration, also if the configuration disables
+	 * it (the counts rely on one solution per relabeling), symmetric
+	 * solutions are not. The configuration of this instance is kept.
+	 * @return counts indexed by DLXBasicExactCoverArray.ORIENT_FIXED,
+	 * ORIENT_SPIN and ORIENT_FLIP
+	 */
+	public long[] countAllConfigurations() {
+		boolean spin = Config.isEnableSpin();
+		boolean spinFlip = Config.isEnableSpinFlip();
+		boolean eliminate = Config.eliminateSymmetry();
+		boolean duplica = Config.isEnableEliminateDuplica();
+		Config.setEnableSpin(true);
+		Config.setEnableSpinFlip(true);
+		Config.setEliminateSymmetry(false);
+		Config.setEnableEliminateDuplica(true);
+		preProcess();
+
+		DLXOrientationCounter oc = new DLXOrientationCounter(basicDLA, Config);
+		long[] counts = new long[3];
+		while (true) {
+			basicSearch.solveSingleSolution();
+			if (!basicSearch.isCompleteSolution()) break;
+			int bits = oc.validConfigurations(basicSearch.solutionRows());
+			if ((bits & DLXOrientationCounter.CONFIG_FIXED) != 0) counts[0]++;
+			if ((bits & DLXOrientationCounter.CONFIG_SPIN) != 0) counts[1]++;
+			if ((bits & DLXOrientationCounter.CONFIG_SPINFLIP) != 0) counts[2]++;
+		}
+
+		Config.setEnableSpin(spin);
+		Config.setEnableSpinFlip(spinFlip);
+		Config.setEliminateSymmetry(eliminate);
+		Config.setEnableEliminateDuplica(duplica);
+		preProcess();
+		return counts;
+	}
+
 	/**
 	 * Reset the DLX search.
 	 */
 	public void resetSearch() {
 		basicSearch.reset();
 		if (Solutions != null) Solutions.clear();
-		Config.reset();
+		if (ViewList != null) ViewList.clear();
 		if (Config.verb) System.out.println("DLX search has been reset.");
 	}
 
+	/**
+	 * Stop the running search. May be called from another thread; the
+	 * search returns no further solutions until it is reset.
+	 */
+	public void cancel() {
+		if (basicSearch != null) basicSearch.getState().setCancelled(true);
+	}
+
+	/**
+	 * Determine if the search has been cancelled.
+	 * @return
+	 */
+	public boolean isCancelled() {
+		return basicSearch != null && basicSearch.getState().cancelled();
+	}
+
+	/**
+	 * Determine if the whole search space has been searched.
+	 * @return
+	 */
+	public boolean isSearchFinished() {
+		return basicSearch.isSearchFinished();
+	}
+
+	/**
+	 * Return the number of search nodes (rows tried) since the last reset.
+	 * @return
+	 */
+	public long getNodes() {
+		return basicSearch.getState().nodes();
+	}
+
+	/**
+	 * Return the pruning counters of the search.
+	 * @return
+	 */
+	public DLXSearchStats getStats() {
+		return basicSearch.getStats();
+	}
+
 	/**
 	 * Determine if the last single step search finds a complete solution.
 	 * @return
@@ -220,7 +359,7 @@ public class DLX {
 		int[][] view = null;
 		for (int i = 0; i < Solutions.size(); i++) {
 			System.out.println("Solution " + (i+1) + ":");
-			view = DLXSymmetry.solutionView(Solutions.get(i));
+			view = symmetry.solutionView(Solutions.get(i));
 			for (int j = 0; j < view.length; j++) {
 				System.out.println(Arrays.toString(view[j]));
 			}
@@ -232,8 +371,120 @@ public class DLX {
 		return Solutions;
 	}
 
+	/**
+	 * Keep the found solutions in getSolutions() or not. Callers which store
+	 * or count the solutions themselves (e.g. in a DLXSolutionStore) turn
+	 * it off to save heap.
+	 * @param b
+	 */
+	public void setKeepSolutions(boolean b) {
+		keepSolutions = b;
+	}
+
+	/**
+	 * Return the placement rows of the last solution, e.g. for a
+	 * DLXSolutionStore of KIND_ROWS.
+	 * @return
+	 */
+	public int[] lastSolutionRows() {
+		return basicSearch.solutionRows();
+	}
+
 	/******************** Private Member Functions ********************/
 
+	/**
+	 * Add a complete solution unless it is symmetric to a solution found
+	 * before.
+	 * @param solution
+	 * @return true if the solution is added
+	 */
+	private boolean addUniqueSolution(List<List<Integer>> solution) {
+		if (!Config.eliminateSymmetry() || board.sfpattern.size() == 8
+				|| basicSearch.getState().symmetryEliminatedByLeader()) {
+			//don't remove symmetry
+			if (keepSolutions) Solutions.add(solution);
+			return true;
+		}
+		int view[][] = symmetry.solutionView(solution);
+		if (!symmetry.isAsymmetricList(view, ViewList)) return false;
+		if (keepSolutions) Solutions.add(solution);
+		ViewList.add(view);
+		return true;
+	}
+
+	/**
+	 * Build the links for all spins and flips.
+	 */
+	private void buildLinks() {
+		basicECA = new DLXBasicExactCoverArray(board, tiles, Config, true);
+		basicDLA = new DLXBasicLinksArray(basicECA, Config);
+		basicSearch = new DLXBasicSearch(basicDLA, Config);
+	}
+
+	/**
+	 * Preprocess through the cache: build the links from a cached entry, or
+	 * parse the puzzle, build the links and store a new entry. Entries hold
+	 * the rows of all spins and flips.
+	 */
+	private void preProcessCached() {
+		String key = DLXCache.key(puzzleText, true, true,
+				Config.isEnableExtra());
+		DLXCache.Entry e = cache.load(key);
+
+		/* The tiles are read from Config by the region pruner and the GUI,
+		 * so the text is parsed also on a hit. */
+		if (puzzle == null) {
+			puzzle = DLXPuzzle.fromText(puzzleText);
+			board = puzzle.board();
+			tiles = puzzle.tiles();
+			Config.setPuzzle(puzzle);
+		}
+
+		if (e != null) {
+			if (Config.verb) System.out.println("Cache hit " + key);
+			Config.setDuplicaRings(e.duplica, e.duplicaS, e.duplicaSF);
+			Config.setEnableExtra(e.enableExtra);
+			Config.setTileAreaNotEnough(e.tileAreaNotEnough);
+
+			basicECA = null;
+			basicDLA = new DLXBasicLinksArray(e.numTiles, e.numCells,
+					e.rowStart, e.rowCols, e.rowOrient, Config);
+			basicSearch = new DLXBasicSearch(basicDLA, Config);
+			cachedLeaders = e.leaderIds;
+			return;
+		}
+
+		if (Config.verb) System.out.println("Cache miss " + key);
+		buildLinks();
+
+		e = new DLXCache.Entry();
+		e.numTiles = basicECA.numTiles;
+		e.numCells = basicECA.numCells;
+		e.rowStart = IntBuffer.wrap(basicECA.rowStart);
+		e.rowCols = IntBuffer.wrap(basicECA.rowCols);
+		e.rowOrient = ByteBuffer.wrap(basicECA.rowOrient);
+		int[][] rings = Config.getDuplicaRings();
+		e.duplica = rings[0];
+		e.duplicaS = rings[1];
+		e.duplicaSF = rings[2];
+		e.leaderIds = new int[3];
+		for (int m = 0; m < 3; m++) {
+			basicDLA.setOrientationMask(m);
+			basicDLA.chooseLeaderTile();
+			e.leaderIds[m] = Config.getLeaderId();
+		}
+		e.enableExtra = Config.isEnableExtra();
+		e.tileAreaNotEnough = Config.tileAreaNotEnough();
+		e.board = board.data;
+		cache.store(key, e);
+
+		/* Extra may have been set by comparing areas, store the entry under
+		 * the key with the updated options as well. */
+		String updated = DLXCache.key(puzzleText, true, true,
+				Config.isEnableExtra());
+		if (!updated.equals(key)) cache.store(updated, e);
+	}
+
 	public static void main(String args[]){
 
 		File dir = new File("./testcases/");
@@ -297,6 +548,8 @@ public class DLX {
 
 
 			result.write("Enable rotation and reflection.\r\n");
+			first = 0;
+			total = 0;
 			/* Measure solve all time. */
 			for(int j = 0; j<times; j++){
 				DLX dlx = new DLX(name);
@@ -26,8 +26,38 @@ public class DLXBasicExactCoverArray {
 	/** The number of Rows */
 	public int numRows = 0;
 
-	/** The exact cover array */
-	public int[][] ECA = null;
+	/** The number of non-zero entries */
+	public int numEntries = 0;
+
+	/**
+	 * The exact cover array in sparse row format: the columns of row i are
+	 * rowCols[rowStart[i]] ... rowCols[rowStart[i + 1] - 1], in ascending
+	 * order. The first column of a row is always the tile column.
+	 */
+	public int[] rowStart = null;
+	public int[] rowCols = null;
+
+	/** Orientation class of each row, see ORIENT_FIXED/SPIN/FLIP */
+	public byte[] rowOrient = null;
+
+	/** Orientation classes: the original pattern, a rotated pattern, and a
+	 *  pattern which needs reflection. */
+	public static final byte ORIENT_FIXED = 0;
+	public static final byte ORIENT_SPIN = 1;
+	public static final byte ORIENT_FLIP = 2;
+
+	/**
+	 * Receives the rows of the exact cover array one at a time, in the
+	 * order they are generated.
+	 */
+	public interface RowSink {
+		/**
+		 * @param cols - column indices in ascending order, tile column
+		 * first; only valid during the call
+		 * @param orient - the orientation class of the row
+		 */
+		void row(int[] cols, byte orient);
+	}
 
 	/******************** Private Member Variables ********************/
 
@@ -43,15 +73,52 @@ public class DLXBasicExactCoverArray {
 	/** The index of each board cells */
 	private int[][] boardIdx = null;
 
+	/** Generate rows for all orientations regardless of spin/flip */
+	private boolean allOrientations = false;
+
 	/** Debug class for printing */
 	private Debug dbg = new Debug();
 
+	/** If not null, rows are passed here instead of being stored */
+	private RowSink sink = null;
+
 	/******************** Public Member Functions ********************/
 
 	public DLXBasicExactCoverArray(Tile b, List<Tile> t, DLXConfig config) {
+		this(b, t, config, false);
+	}
+
+	/**
+	 * Constructor of DLXBasicExactCoverArray
+	 * @param b - the board
+	 * @param t - the tile list
+	 * @param config
+	 * @param all - if true, generate the rows of all spins and flips, and
+	 * tag them with their orientation class so that the links array can
+	 * mask them for the configured spin/flip.
+	 */
+	public DLXBasicExactCoverArray(Tile b, List<Tile> t, DLXConfig config,
+			boolean all) {
+		this(b, t, config, all, null);
+	}
+
+	/**
+	 * Constructor of DLXBasicExactCoverArray which streams the rows into a
+	 * sink, e.g. to build links which do not fit into the heap. Only the
+	 * counts are kept; rowStart, rowCols and rowOrient stay null.
+	 * @param b - the board
+	 * @param t - the tile list
+	 * @param config
+	 * @param all - generate the rows of all spins and flips
+	 * @param s - the row sink
+	 */
+	public DLXBasicExactCoverArray(Tile b, List<Tile> t, DLXConfig config,
+			boolean all, RowSink s) {
 		board = b;
 		tiles = t;
 		Config = config;
+		allOrientations = all;
+		sink = s;
 
 		numTiles = tiles.size();
 		numCells = board.area;
@@ -59,9 +126,7 @@ public class DLXBasicExactCoverArray {
 
 		boardIdx = buildBoardIdxArray(board);
 
-		ECA = buildExactCoverArray(board, tiles);
-
-		numRows = ECA.length;
+		buildExactCoverArray(board, tiles);
 
 		/* check tile area */
 		int total_area = 0;
@@ -138,23 +203,25 @@ public class DLXBasicExactCoverArray {
 	}
 
 	/**
-	 * Build a Exact Cover row.
+	 * Build a Exact Cover row (sparse, column indices in ascending order).
 	 *
 	 * @param board
 	 * @param tile
+	 * @param area
 	 * @param r
 	 * @param c
 	 * @param tileid
 	 * @return
 	 */
-	private int[] buildExactCoverRow(int[][] board, char[][] tile, int r,
-			int c, int tileid) {
-		int[] row = new int[numColumns];
-		row[tileid] = 1;
+	private int[] buildExactCoverRow(int[][] board, char[][] tile, int area,
+			int r, int c, int tileid) {
+		int[] row = new int[area + 1];
+		int n = 0;
+		row[n++] = tileid;
 		for (int i = 0; i < tile.length; i++) {
 			for (int j = 0; j < tile[0].length; j++) {
 				if (tile[i][j] != Config.S) {
-					row[numTiles + board[r + i][c + j]] = 1;
+					row[n++] = numTiles + board[r + i][c + j];
 				}
 			}
 		}
@@ -166,16 +233,16 @@ public class DLXBasicExactCoverArray {
 	 *
 	 * @param board
 	 * @param tiles
-	 * @return
 	 */
-	private int[][] buildExactCoverArray(Tile board, List<Tile> tiles) {
+	private void buildExactCoverArray(Tile board, List<Tile> tiles) {
 		/* Use a list to store all the rows */
 		List<int[]> ECL = new ArrayList<int[]>();
+		List<Byte> orient = new ArrayList<Byte>();
 		for (int i = 0; i < tiles.size(); i++) {
 			Tile tile = tiles.get(i);
 			/* Set available spins and flips of tiles. */
 			int available = 0;
-			if (Config.isEnableSpinFlip())
+			if (allOrientations || Config.isEnableSpinFlip())
 				available = tile.sfpattern.size();
 			else if (Config.isEnableSpin())
 				available = tile.spattern.size();
@@ -183,41 +250,73 @@ public class DLXBasicExactCoverArray {
 				available = 1;
 
 			for (int j = 0; j < available; j++) {
-				/* Set tiles. */
+				/* Set tiles. Note the spin patterns are the leading
+				 * patterns of the spin/flip pattern list. */
 				char[][] t;
-				if (Config.isEnableSpinFlip())
+				if (allOrientations || Config.isEnableSpinFlip())
 					t = tile.sfpattern.get(j);
 				else if (Config.isEnableSpin())
 					t = tile.spattern.get(j);
 				else
 					t = tile.data;
+				byte o = ORIENT_FLIP;
+				if (j == 0) o = ORIENT_FIXED;
+				else if (j < tile.spattern.size()) o = ORIENT_SPIN;
 
 				for (int r = 0; r < board.data.length - t.length + 1; r++) {
 					for (int c = 0; c < board.data[0].length - t[0].length + 1; c++) {
 						if (isValidPosition(board.data, t, r, c)) {
-							int[] row = buildExactCoverRow(boardIdx, t, r, c, i);
+							int[] row = buildExactCoverRow(boardIdx, t,
+									tile.area, r, c, i);
+							numEntries += row.length;
+							if (sink != null) {
+								sink.row(row, o);
+								numRows++;
+								continue;
+							}
 							ECL.add(row);
+							orient.add(o);
 						}
 					}
 				}
 			}
 		}
 
-		/* Convert list of int[] to int[][] */
-		int[][] ECA = new int[ECL.size()][numColumns];
-		for (int i = 0; i < ECL.size(); i++) {
-			for (int j = 0; j < numColumns; j++) {
-				if (j < ECL.get(i).length) {
-					ECA[i][j] = ECL.get(i)[j];
-				}
+		if (sink != null) return;
+
+		/* Convert list of int[] to the sparse row arrays */
+		numRows = ECL.size();
+		rowStart = new int[numRows + 1];
+		rowCols = new int[numEntries];
+		rowOrient = new byte[numRows];
+		int n = 0;
+		for (int i = 0; i < numRows; i++) {
+			rowStart[i] = n;
+			rowOrient[i] = orient.get(i);
+			for (int col: ECL.get(i)) {
+				rowCols[n++] = col;
 			}
 		}
+		rowStart[numRows] = n;
 
 		if (Config.verb) {
 			System.out.println("Exact Cover Array:");
-			dbg.print2DArray(ECA);
+			dbg.print2DArray(toDenseArray());
+		}
+	}
+
+	/**
+	 * Expand the sparse rows into a 0/1 array, only used for printing.
+	 * @return
+	 */
+	private int[][] toDenseArray() {
+		int[][] eca = new int[numRows][numColumns];
+		for (int i = 0; i < numRows; i++) {
+			for (int k = rowStart[i]; k < rowStart[i + 1]; k++) {
+				eca[i][rowCols[k]] = 1;
+			}
 		}
-		return ECA;
+		return eca;
 	}
 
 }
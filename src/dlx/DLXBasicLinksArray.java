@@ -1,5 +1,9 @@
 package dlx;
 
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Random;
 
 /**
  * DLX Links Generator (Basic Version)
@@ -24,19 +28,41 @@ public class DLXBasicLinksArray {
 	/** The head of dancing links */
 	public DLXColumnHeader H = null;
 
+	/** Zobrist hash of the covered columns, kept by cover and uncover */
+	public long hash = 0;
+
 	/******************** Private Member Variables ********************/
 
 	/** Reference of class DLXConfig */
 	private DLXConfig Config = null;
 
-	/** Reference of class DLXBasicExactCoverArray */
-	private DLXBasicExactCoverArray ECA = null;
+	/** The sparse rows: start offsets and column indices */
+	private IntBuffer rowStart = null;
+	private IntBuffer rowCols = null;
+
+	/** Orientation class of each row, null if all rows are ORIENT_FIXED */
+	private ByteBuffer rowOrient = null;
 
 	/** The array of column header */
 	private DLXColumnHeader[] CHA = null;
 
-	/** The exact cover cell objects */
-	private DLXCell[][] DLA = null;
+	/** The leftmost cell of each row */
+	private DLXCell[] rowHead = null;
+
+	/** Rows which are hidden by the orientation mask */
+	private boolean[] hidden = null;
+
+	/** A random key of each column, for hash */
+	private long[] zobrist = null;
+
+	/** The 4-neighbour cells and the board position of each cell, built
+	 *  on first use */
+	private int[][] neighbours = null;
+	private int[] cellRow = null;
+	private int[] cellCol = null;
+
+	/** The largest orientation class currently linked */
+	private int orientMask = DLXBasicExactCoverArray.ORIENT_FLIP;
 
 	/******************** Public Member Functions ********************/
 
@@ -46,21 +72,43 @@ public class DLXBasicLinksArray {
 	 * @param config
 	 */
 	public DLXBasicLinksArray(DLXBasicExactCoverArray eca, DLXConfig config) {
-		ECA = eca;
+		this(eca.numTiles, eca.numCells, IntBuffer.wrap(eca.rowStart),
+				IntBuffer.wrap(eca.rowCols), ByteBuffer.wrap(eca.rowOrient),
+				config);
+		chooseLeaderTile();
+	}
+
+	/**
+	 * Constructor of DLXBasicLinksArray from sparse rows, e.g. the rows of
+	 * a DLXCache entry. The leader tile is not chosen here.
+	 * @param tiles - the number of tiles
+	 * @param cells - the number of board cells
+	 * @param start - numRows + 1 offsets into cols
+	 * @param cols - column indices of all rows
+	 * @param orient - orientation class of each row, or null
+	 * @param config
+	 */
+	public DLXBasicLinksArray(int tiles, int cells, IntBuffer start,
+			IntBuffer cols, ByteBuffer orient, DLXConfig config) {
 		Config = config;
-		numTiles = ECA.numTiles;
-		numCells = ECA.numCells;
-		numColumns = ECA.numColumns;
-		numRows = ECA.numRows;
+		numTiles = tiles;
+		numCells = cells;
+		numColumns = tiles + cells;
+		numRows = start.limit() - 1;
+		rowStart = start;
+		rowCols = cols;
+		rowOrient = orient;
 
 		CHA = new DLXColumnHeader[numColumns];
-		DLA = new DLXCell[numRows][numColumns];
+		rowHead = new DLXCell[numRows];
+		hidden = new boolean[numRows];
+		zobrist = new long[numColumns];
+		Random random = new Random(numColumns);
+		for (int i = 0; i < numColumns; i++) zobrist[i] = random.nextLong();
 
 		H = buildDancingLinks();
 
 		verifyDancingLinks();
-
-		chooseLeaderTile();
 	}
 
 	/**
@@ -75,8 +123,198 @@ public class DLXBasicLinksArray {
 		return false;
 	}
 
+	/**
+	 * Return true if a column is covered. A covered header is unlinked
+	 * from its left neighbour, which never links back to it until the
+	 * header is uncovered.
+	 * @param col
+	 * @return
+	 */
+	public boolean isCovered(int col) {
+		return CHA[col].L.R != CHA[col];
+	}
+
+	/**
+	 * Return true if the search may branch on a column: not the column of
+	 * a tile when extra tiles are allowed, nor of a duplicated tile.
+	 * @param h
+	 * @return
+	 */
+	public boolean isBranchColumn(DLXColumnHeader h) {
+		if (h.col >= numTiles) return true;
+		if (Config.isEnableExtra()) return false;
+		return !Config.eliminateDuplica() || Config.duplica()[h.col] == h.col;
+	}
+
+	/**
+	 * Return the 4-neighbour cells of each board cell, numbered row by row
+	 * as the cell columns.
+	 * @return null if the board is unknown
+	 */
+	public int[][] cellNeighbours() {
+		if (neighbours == null) buildCellTables();
+		return neighbours;
+	}
+
+	/**
+	 * Return the board row of each cell.
+	 * @return null if the board is unknown
+	 */
+	public int[] cellRows() {
+		if (cellRow == null) buildCellTables();
+		return cellRow;
+	}
+
+	/**
+	 * Return the board column of each cell.
+	 * @return null if the board is unknown
+	 */
+	public int[] cellColumns() {
+		if (cellCol == null) buildCellTables();
+		return cellCol;
+	}
+
+	/**
+	 * Cover Column - Part of the Dancing Link Algorithm
+	 *
+	 * @param c
+	 */
+	public void cover(DLXColumnHeader c) {
+		hash ^= zobrist[c.col];
+		c.R.L = c.L;
+		c.L.R = c.R;
+		for (DLXCell i = c.D; i != c; i = i.D) {
+			for (DLXCell j = i.R; j != i; j = j.R) {
+				j.D.U = j.U;
+				j.U.D = j.D;
+				j.C.S -= 1;
+			}
+		}
+	}
+
+	/**
+	 * Uncover Column - Part of the Dancing Link Algorithm
+	 *
+	 * @param c
+	 */
+	public void uncover(DLXColumnHeader c) {
+		for (DLXCell i = c.U; i != c; i = i.U) {
+			for (DLXCell j = i.L; j != i; j = j.L) {
+				j.C.S += 1;
+				j.D.U = j;
+				j.U.D = j;
+			}
+		}
+		c.R.L = c;
+		c.L.R = c;
+		hash ^= zobrist[c.col];
+	}
+
+	/**
+	 * Return the tile of a row.
+	 * @param row
+	 * @return
+	 */
+	public int rowTile(int row) {
+		return rowCols.get(rowStart.get(row));
+	}
+
+	/**
+	 * Return the board cell indices covered by a row.
+	 * @param row
+	 * @return
+	 */
+	public int[] rowCells(int row) {
+		int b = rowStart.get(row) + 1;
+		int[] cells = new int[rowStart.get(row + 1) - b];
+		for (int k = 0; k < cells.length; k++) {
+			cells[k] = rowCols.get(b + k) - numTiles;
+		}
+		return cells;
+	}
+
+	/**
+	 * Return the orientation class of a row.
+	 * @param row
+	 * @return
+	 */
+	public int orientation(int row) {
+		return rowOrient == null ? DLXBasicExactCoverArray.ORIENT_FIXED
+				: rowOrient.get(row);
+	}
+
+	/**
+	 * Link only the rows whose orientation class is not larger than the
+	 * given class, so that links built for spin/flip can also serve the
+	 * spin-only and fixed searches. Must be called when no column is
+	 * covered. The unreachable position check is redone for the new mask.
+	 * @param maxOrient - one of DLXBasicExactCoverArray.ORIENT_*
+	 */
+	public void setOrientationMask(int maxOrient) {
+		if (maxOrient != orientMask) {
+			/* Relink hidden rows in reverse order, then hide again. */
+			for (int i = numRows - 1; i >= 0; i--) {
+				if (hidden[i]) {
+					unhideRow(rowHead[i]);
+					hidden[i] = false;
+				}
+			}
+			for (int i = 0; i < numRows; i++) {
+				if (orientation(i) > maxOrient) {
+					hideRow(rowHead[i]);
+					hidden[i] = true;
+				}
+			}
+			orientMask = maxOrient;
+		}
+		checkUnreachablePosition();
+	}
+
 	/******************** Private Member Functions ********************/
 
+	/**
+	 * Unlink all cells of a row from their columns.
+	 * @param r
+	 */
+	private void hideRow(DLXCell r) {
+		DLXCell j = r;
+		do {
+			j.D.U = j.U;
+			j.U.D = j.D;
+			j.C.S -= 1;
+			j = j.R;
+		} while (j != r);
+	}
+
+	/**
+	 * Link back all cells of a hidden row.
+	 * @param r
+	 */
+	private void unhideRow(DLXCell r) {
+		DLXCell j = r.L;
+		do {
+			j.C.S += 1;
+			j.D.U = j;
+			j.U.D = j;
+			j = j.L;
+		} while (j != r.L);
+	}
+
+	/**
+	 * If a cell cannot be covered by any tile, then directly fail.
+	 */
+	private void checkUnreachablePosition() {
+		Config.setHasUnreachablePosition(false);
+		for (int j = numTiles; j < numColumns; j++) {
+			if (CHA[j].S == 0) {
+				Config.setHasUnreachablePosition(true);
+				if (Config.verb)
+					System.out.println("Directly fail (unreachable positions).");
+				break;
+			}
+		}
+	}
+
 	/**
 	 * Build the Dancing Links.
 	 *
@@ -88,7 +326,7 @@ public class DLXBasicLinksArray {
 		h.col = -1;
 
 		/* Allocate column head objects CHA and build the links */
-		for (int i = 0; i < ECA.numColumns; i++) {
+		for (int i = 0; i < numColumns; i++) {
 			DLXColumnHeader y = new DLXColumnHeader();
 			y.U = y;
 			y.D = y;
@@ -101,10 +339,10 @@ public class DLXBasicLinksArray {
 			} else {
 				y.L = CHA[i - 1];
 				CHA[i - 1].R = y;
-				if (i == numColumns - 1) {
-					y.R = h;
-					h.L = y;
-				}
+			}
+			if (i == numColumns - 1) {
+				y.R = h;
+				h.L = y;
 			}
 			CHA[i] = y;
 			if (i < numTiles) {
@@ -116,78 +354,40 @@ public class DLXBasicLinksArray {
 			}
 		}
 
-		/* Allocate cell objects DLA */
-		Config.setHasUnreachablePosition(false);
-		for (int j = 0; j < numColumns; j++) {
-			int n = 0;
-			for (int i = 0; i < numRows; i++) {
-				if (ECA.ECA[i][j] != 0) {
-					DLXCell x = new DLXCell();
-					x.row = i;
-					x.col = j;
-					DLA[i][j] = x;
-					n++;
-				} else {
-					DLA[i][j] = null;
-				}
-			}
-			/* If a cell cannot be covered by any tile, then directly fail. */
-			if (n == 0 && j >= numTiles) {
-				Config.setHasUnreachablePosition(true);
-				if (Config.verb)
-					System.out.println("Directly fail (unreachable positions).");
-				return null;
-			}
-		}
-
-		/* Build the dancing links (row direction) */
+		/* Build the dancing links row by row, each cell is appended to the
+		 * bottom of its column so columns keep the row order. */
 		for (int i = 0; i < numRows; i++) {
 			DLXCell leftmost = null;
 			DLXCell prev = null;
-			DLXCell curr = null;
-			for (int j = 0; j < numColumns; j++) {
-				if (DLA[i][j] != null) {
-					curr = DLA[i][j];
-					if (leftmost == null) {
-						leftmost = curr;
-						prev = curr;
-					} else {
-						curr.L = prev;
-						prev.R = curr;
-						prev = curr;
-					}
-					curr.tid = leftmost.col;  // Assign tid for each DLXCell
+			for (int k = rowStart.get(i); k < rowStart.get(i + 1); k++) {
+				DLXColumnHeader y = CHA[rowCols.get(k)];
+				DLXCell x = new DLXCell();
+				x.row = i;
+				x.col = y.col;
+				x.C = y;
+				x.U = y.U;
+				x.D = y;
+				y.U.D = x;
+				y.U = x;
+				y.S++;
+				if (leftmost == null) {
+					leftmost = x;
+				} else {
+					x.L = prev;
+					prev.R = x;
 				}
+				x.tid = leftmost.col;  // Assign tid for each DLXCell
+				prev = x;
 			}
-			curr.R = leftmost;
-			leftmost.L = curr;
-		}
-		/* Build the dancing links (column direction) */
-		for (int i = 0; i < numColumns; i++) {
-			DLXCell prev = null;
-			DLXCell curr = CHA[i];
-			int size = 0;
-			for (int j = 0; j < numRows; j++) {
-				if (DLA[j][i] != null) {
-					curr = DLA[j][i];
-					curr.C = CHA[i];
-					size++;
-					if (prev == null) {
-						curr.U = CHA[i];
-						CHA[i].D = curr;
-						prev = curr;
-					} else {
-						curr.U = prev;
-						prev.D = curr;
-						prev = curr;
-					}
-				}
+			if (leftmost != null) {
+				prev.R = leftmost;
+				leftmost.L = prev;
 			}
-			curr.D = CHA[i];
-			CHA[i].U = curr;
-			CHA[i].S = size;
+			rowHead[i] = leftmost;
 		}
 
+		checkUnreachablePosition();
+
 		return h;
 	}
 
@@ -263,7 +463,7 @@ public class DLXBasicLinksArray {
 	/**
 	 * Choose a leader tile from tile list. (for eliminating symmetry)
 	 */
-	private void chooseLeaderTile() {
+	public void chooseLeaderTile() {
 		int bestId = -1, bestSize = Integer.MAX_VALUE;
 		if (!Config.isEnableExtra())
 		for (DLXColumnHeader h = H.R; h.col < numTiles; h = h.R) {
@@ -277,4 +477,43 @@ public class DLXBasicLinksArray {
 		Config.setLeaderId(bestId);
 	}
 
+	/**
+	 * Build the neighbours and the board positions of the cells.
+	 */
+	private void buildCellTables() {
+		if (Config.board == null) return;
+		char[][] board = Config.board.data;
+		int rows = board.length;
+		int cols = rows > 0 ? board[0].length : 0;
+		int[][] idx = new int[rows][cols];
+		int n = 0;
+		for (int r = 0; r < rows; r++) {
+			for (int c = 0; c < cols; c++) {
+				idx[r][c] = (board[r][c] != Config.S) ? n++ : -1;
+			}
+		}
+		int[][] nb = new int[n][];
+		int[] rr = new int[n], cc = new int[n];
+		int[] dr = {-1, 1, 0, 0}, dc = {0, 0, -1, 1};
+		for (int r = 0; r < rows; r++) {
+			for (int c = 0; c < cols; c++) {
+				int i = idx[r][c];
+				if (i < 0) continue;
+				rr[i] = r;
+				cc[i] = c;
+				int[] tmp = new int[4];
+				int k = 0;
+				for (int d = 0; d < 4; d++) {
+					int nr = r + dr[d], nc = c + dc[d];
+					if (nr < 0 || nr >= rows || nc < 0 || nc >= cols) continue;
+					if (idx[nr][nc] >= 0) tmp[k++] = idx[nr][nc];
+				}
+				nb[i] = Arrays.copyOf(tmp, k);
+			}
+		}
+		neighbours = nb;
+		cellRow = rr;
+		cellCol = cc;
+	}
+
 }
@@ -1,6 +1,7 @@
 package dlx;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -25,6 +26,43 @@ public class DLXBasicSearch {
 	/** The DLXTrail for keeping partial solution (stack) */
 	private DLXTrail Solution = null;
 
+	/** The state of this search */
+	private DLXSearchState State = null;
+
+	/** Symmetry checks on the board of this search */
+	private DLXSymmetry Symmetry = null;
+
+	/** Counters of the pruning steps */
+	private DLXSearchStats Stats = null;
+
+	/** Dead region detection, null if the board is unknown */
+	private DLXRegionPruner Pruner = null;
+
+	/** Coloring invariants, null if the board is unknown */
+	private DLXInvariants Invariants = null;
+
+	/**
+	 * The number of forced rows placed after each branch row of Solution.
+	 * A branch row and its forced rows are undone as one unit.
+	 */
+	private int[] forcedCount = new int[16];
+	private int units = 0;
+
+	/** Lookahead marks: a row or column counts for the current check only
+	 *  if its stamp equals stamp, so the arrays are never cleared */
+	private int stamp = 0;
+	private int[] rowStamp = null;
+	private int[] colStamp = null;
+	private int[] colHits = null;
+
+	/** Candidate rows of a column and their scores, for the value order */
+	private DLXCell[] candidates = new DLXCell[16];
+	private int[] scores = new int[16];
+
+	/** Only search the first level choices i with i % sliceCount == slice */
+	private int slice = 0;
+	private int sliceCount = 1;
+
 	/******************** Public Member Functions ********************/
 
 	/**
@@ -37,6 +75,16 @@ public class DLXBasicSearch {
 		Config = config;
 		Trail = new DLXTrail();
 		Solution = new DLXTrail();
+		State = new DLXSearchState();
+		Symmetry = new DLXSymmetry(config);
+		Stats = new DLXSearchStats();
+		if (config.board != null) {
+			Pruner = new DLXRegionPruner(dla, config, Stats);
+			Invariants = new DLXInvariants(dla, config, Stats);
+		}
+		rowStamp = new int[dla.numRows];
+		colStamp = new int[dla.numColumns];
+		colHits = new int[dla.numColumns];
 	}
 
 	/**
@@ -44,14 +92,14 @@ public class DLXBasicSearch {
 	 * @return a list of valid solutions
 	 */
 	public List<List<List<Integer>>> solve() {
-		Config.setSingleStepSearch(false);
-		Config.setSingleSolutionSearch(false);
+		State.setSingleStepSearch(false);
+		State.setSingleSolutionSearch(false);
 
 		List<List<List<Integer>>> solutions =
 				new ArrayList<List<List<Integer>>>();
-		while (!Config.searchFinished()) {
+		while (!State.searchFinished()) {
 			solveSingleSolution();
-			if (Solution.size() > 0) {
+			if (Solution.isComplete()) {
 				solutions.add(solutionToPosition(Solution));
 			}
 		}
@@ -60,11 +108,30 @@ public class DLXBasicSearch {
 
 	/**
 	 * Solve until find next solution.
-	 * @return a valid solution
+	 * @return a valid solution, or null if the search is finished or
+	 * cancelled
 	 */
 	public List<List<Integer>> solveSingleSolution() {
-		Config.setSingleSolutionSearch(true);
+		State.setSingleSolutionSearch(true);
+		searchLoop(Trail);
+		if (!Solution.isComplete()) return null;
+		return solutionToPosition(Solution);
+	}
+
+	/**
+	 * Solve for at most a given number of search nodes. The search pauses
+	 * when the budget is used up and resumes from the same place on the
+	 * next call.
+	 * @param quantum - the number of rows to try at most
+	 * @return a valid solution if one is found within the budget, otherwise
+	 * null (see isSearchFinished())
+	 */
+	public List<List<Integer>> solveNodes(long quantum) {
+		State.setSingleSolutionSearch(true);
+		State.setNodeLimit(State.nodes() + quantum);
 		searchLoop(Trail);
+		State.setNodeLimit(Long.MAX_VALUE);
+		if (!Solution.isComplete()) return null;
 		return solutionToPosition(Solution);
 	}
 
@@ -73,18 +140,121 @@ public class DLXBasicSearch {
 	 * @return a partial solution
 	 */
 	public List<List<Integer>> solveSingleStep() {
-		Config.setSingleStepSearch(true);
+		State.setSingleStepSearch(true);
 		searchLoop(Trail);
 		return solutionToPosition(Solution);
 	}
 
 	/**
-	 * Reset the whole DLX search so that we can start over again.
+	 * Reset the whole DLX search so that we can start over again. The rows
+	 * on the partial solution are uncovered in reverse order, so the links
+	 * are restored in O(depth) and can be searched again.
 	 */
 	public void reset() {
+		while (!Solution.isEmpty()) {
+			uncoverRow(Solution.pop());
+		}
 		Trail.clear();
-		Solution.clear();
-		Config.setSearchFinished(false);
+		units = 0;
+		Solution.setComplete(false);
+		State.reset();
+		Stats.reset();
+	}
+
+	/**
+	 * Prepare the pruning tables and check the coloring invariants for the
+	 * current configuration, after the orientation mask of the links is set.
+	 */
+	public void prepare() {
+		if (Pruner != null && Config.isEnableRegionPruning()) Pruner.prepare();
+		Config.setHasColoringImbalance(false);
+		if (Invariants != null && Config.isEnableColoring()) Invariants.prepare();
+	}
+
+	/**
+	 * Count the solutions of a new search with DLXComponentCounter, which
+	 * counts the components the board falls apart into separately. The
+	 * search is finished afterwards.
+	 * @return the number of solutions, or -1 if the configuration or a
+	 * started search is not supported
+	 */
+	public long countByComponents() {
+		if (!isCountingSupported()) return -1;
+		long n = 0;
+		if (!Config.isDirectlyFail()) {
+			n = new DLXComponentCounter(DLA, Config, State, Stats)
+					.count(countingFirstLevel());
+		}
+		State.setSearchFinished(true);
+		return n;
+	}
+
+	/**
+	 * Count the solutions of a new search with DLXProfileCounter, the
+	 * dynamic program for narrow boards. The search is finished afterwards
+	 * unless the states do not fit in the memory limit.
+	 * @return the number of solutions, or -1 if the configuration or a
+	 * started search is not supported, or the board is too wide
+	 */
+	public long countByProfile() {
+		if (!isCountingSupported()) return -1;
+		long n = 0;
+		if (!Config.isDirectlyFail()) {
+			DLXProfileCounter p = new DLXProfileCounter(DLA, Config, State);
+			n = Config.isEnableProfileCut() ? p.countCut(countingFirstLevel())
+					: p.count(countingFirstLevel());
+			if (n < 0) return -1;
+		}
+		State.setSearchFinished(true);
+		return n;
+	}
+
+	/**
+	 * Restrict the search to a slice of the first level choices, so that
+	 * several searches on copies of the links can share the search space.
+	 * The slices 0 .. count-1 partition the solutions. Set before the
+	 * search starts.
+	 * @param index
+	 * @param count
+	 */
+	public void setFirstLevelSlice(int index, int count) {
+		slice = index;
+		sliceCount = count;
+	}
+
+	/**
+	 * Return the state of this search.
+	 * @return
+	 */
+	public DLXSearchState getState() {
+		return State;
+	}
+
+	/**
+	 * Return the pruning counters of this search.
+	 * @return
+	 */
+	public DLXSearchStats getStats() {
+		return Stats;
+	}
+
+	/**
+	 * Return the rows of the current (partial) solution in trail order.
+	 * @return
+	 */
+	public int[] solutionRows() {
+		int[] rows = new int[Solution.size()];
+		for (int i = 0; i < rows.length; i++) rows[i] = Solution.get(i).row;
+		return rows;
+	}
+
+	/**
+	 * Return true if the whole search space has been searched (or the search
+	 * is cancelled).
+	 * @return
+	 */
+	public boolean isSearchFinished() {
+		return State.searchFinished();
 	}
 
 	/**
@@ -96,24 +266,61 @@ public class DLXBasicSearch {
 	}
 	/******************** Private Member Functions ********************/
 
+	/**
+	 * Determine if a new search can be counted by the counters.
+	 * @return
+	 */
+	private boolean isCountingSupported() {
+		if (!Solution.isEmpty() || !Trail.isEmpty() || State.searchFinished())
+			return false;
+		if (!DLXComponentCounter.supports(Config, DLA.numTiles)) return false;
+		return isLeaderCounting() || sliceCount <= 1;
+	}
+
+	private boolean isLeaderCounting() {
+		return Config.eliminateSymmetry() && !Config.isEnableExtra()
+				&& Config.getLeaderId() >= 0;
+	}
+
+	/**
+	 * Return the first level rows a counter starts from: the rows of the
+	 * leader tile in the slice when it eliminates symmetry.
+	 * @return the rows, or null to count all exact covers
+	 */
+	private List<DLXCell> countingFirstLevel() {
+		if (!isLeaderCounting()) return null;
+		DLXTrail t = new DLXTrail();
+		pushFirstLevelSearch(t, chooseFirstColumnObject());
+		if (sliceCount > 1) keepFirstLevelSlice(t);
+		List<DLXCell> first = new ArrayList<DLXCell>();
+		for (int i = 0; i < t.size(); i++) first.add(t.get(i));
+		return first;
+	}
+
 	/**
 	 * Determine if duplicated tiles are used in order in current trail.
 	 * @return true if in order
 	 */
 	private boolean duplicatedTilesUsedInOrder(DLXTrail trail) {
 		// Optimization: We only need to check the last element in the trail.
-		int i = trail.size() - 1;
-		//for (int i = 0; i < trail.size(); i++) {
-			DLXCell x = trail.get(i);
-			if (Config.duplica()[x.tid] != x.tid) {
-				int j = x.tid;
-				while (j > Config.duplica()[j]) {
-					j = Config.duplica()[j];
-					if (DLA.isReachableColumnHeader(j))
-						return false;
-				}
+		return duplicatedTileUsedInOrder(trail.top());
+	}
+
+	/**
+	 * Determine if the tile of a row can be used now, i.e. all duplicates
+	 * of the tile with smaller ids are used.
+	 * @param x
+	 * @return true if in order
+	 */
+	private boolean duplicatedTileUsedInOrder(DLXCell x) {
+		if (Config.duplica()[x.tid] != x.tid) {
+			int j = x.tid;
+			while (j > Config.duplica()[j]) {
+				j = Config.duplica()[j];
+				if (DLA.isReachableColumnHeader(j))
+					return false;
 			}
-		//}
+		}
 		return true;
 	}
 
@@ -124,15 +331,120 @@ public class DLXBasicSearch {
 	 * @param c
 	 */
 	private void pushNextLevelSearch(DLXTrail trail, DLXColumnHeader c) {
+		if (Config.getValueOrder() != DLXValueOrder.NATURAL) {
+			pushOrderedLevelSearch(trail, c, Config.getValueOrder());
+			return;
+		}
 		for (DLXCell i = c.U; i != c; i = i.U) {
 			trail.push(i);
 			/* Eliminate tile duplication: If duplicated tiles in
 			 * Trail are not used in correct order, then pop them */
 			if (Config.eliminateDuplica()) {
-				if (!duplicatedTilesUsedInOrder(trail))
+				if (!duplicatedTilesUsedInOrder(trail)) {
 					trail.pop();
+					continue;
+				}
+			}
+			/* Lookahead: drop rows which empty another column */
+			if (Config.isEnableLookahead() && emptiesColumn(i))
+				trail.pop();
+		}
+	}
+
+	/**
+	 * Push the choices for next level search so that they are tried in
+	 * the value order: sorted by score into the candidate buffer, which
+	 * only grows, and pushed from the last.
+	 * @param trail
+	 * @param c
+	 * @param order
+	 */
+	private void pushOrderedLevelSearch(DLXTrail trail, DLXColumnHeader c,
+			DLXValueOrder order) {
+		int n = 0;
+		for (DLXCell i = c.D; i != c; i = i.D) {
+			if (Config.eliminateDuplica() && !duplicatedTileUsedInOrder(i))
+				continue;
+			if (Config.isEnableLookahead() && emptiesColumn(i)) continue;
+			if (n == candidates.length) {
+				candidates = Arrays.copyOf(candidates, n * 2);
+				scores = Arrays.copyOf(scores, n * 2);
+			}
+			/* Insert after the rows with lower or equal scores */
+			int s = order.score(i, DLA);
+			int j = n++;
+			while (j > 0 && scores[j - 1] > s) {
+				candidates[j] = candidates[j - 1];
+				scores[j] = scores[j - 1];
+				j--;
 			}
+			candidates[j] = i;
+			scores[j] = s;
 		}
+		while (n > 0) trail.push(candidates[--n]);
+	}
+
+	/**
+	 * Lookahead: determine if covering the row of x would leave a column
+	 * which must be covered without rows. Only reads the links: the rows
+	 * which meet x are counted per column, and a column fails when all its
+	 * rows are counted.
+	 * @param x
+	 * @return true if the row can be dropped
+	 */
+	private boolean emptiesColumn(DLXCell x) {
+		Stats.lookaheadChecks++;
+		if (++stamp == 0) {
+			Arrays.fill(rowStamp, 0);
+			Arrays.fill(colStamp, 0);
+			stamp = 1;
+		}
+		/* The columns of x are covered anyway; -1 keeps them from failing */
+		DLXCell k = x;
+		do {
+			colStamp[k.col] = stamp;
+			colHits[k.col] = -1;
+			k = k.R;
+		} while (k != x);
+
+		long cells = 0;
+		boolean empty = false;
+		k = x;
+		do {
+			for (DLXCell m = k.C.D; m != k.C && !empty; m = m.D) {
+				if (rowStamp[m.row] == stamp) continue;
+				rowStamp[m.row] = stamp;
+				DLXCell n = m;
+				do {
+					cells++;
+					int j = n.col;
+					if (colStamp[j] != stamp) {
+						colStamp[j] = stamp;
+						colHits[j] = 0;
+					}
+					if (colHits[j] >= 0 && ++colHits[j] == n.C.S
+							&& mustCover(j)) {
+						empty = true;
+					}
+					n = n.R;
+				} while (n != m);
+			}
+			k = k.R;
+		} while (k != x && !empty);
+
+		Stats.lookaheadCells += cells;
+		if (empty) Stats.lookaheadPruned++;
+		return empty;
+	}
+
+	/**
+	 * Determine if a column has to be covered in a solution: board cells,
+	 * and tiles unless extra tiles are allowed.
+	 * @param col
+	 * @return
+	 */
+	private boolean mustCover(int col) {
+		return col >= DLA.numTiles || !Config.isEnableExtra();
 	}
 
 	/**
@@ -146,15 +458,15 @@ public class DLXBasicSearch {
 		DLXTrail t1 = new DLXTrail();
 		t1.push(x);
 		List<List<Integer>> s1 = solutionToPosition(t1);
-		int[][] v1 = DLXSymmetry.solutionView(s1);
+		int[][] v1 = Symmetry.solutionView(s1);
 
 		for (int i = 0; i < trail.size(); i++) {
 			DLXTrail t2 = new DLXTrail();
 			t2.push(trail.get(i));
 			List<List<Integer>> s2 = solutionToPosition(t2);
-			int[][] v2 = DLXSymmetry.solutionView(s2);
+			int[][] v2 = Symmetry.solutionView(s2);
 
-			if (!DLXSymmetry.isAsymmetric(v1, v2)) {
+			if (!Symmetry.isAsymmetric(v1, v2)) {
 				return true;
 			}
 		}
@@ -183,57 +495,34 @@ public class DLXBasicSearch {
 				cnt++;
 			}
 		}
-		Config.setSymmetryEiminatedByLeader(true);
+		State.setSymmetryEliminatedByLeader(true);
 		if (Config.verb) {
 			System.out.println("Leader tile eliminates "
 					+ (c.S - cnt) + "/" + c.S + " symmetric possibilities.");
 		}
 	}
 
+	/**
+	 * Drop the first level choices which are not in the slice.
+	 * @param trail
+	 */
+	private void keepFirstLevelSlice(DLXTrail trail) {
+		List<DLXCell> choices = new ArrayList<DLXCell>();
+		for (int i = 0; i < trail.size(); i++) choices.add(trail.get(i));
+		trail.clear();
+		for (int i = slice; i < choices.size(); i += sliceCount) {
+			trail.push(choices.get(i));
+		}
+	}
+
 	/**
 	 * Choose Column Object - Part of the Dancing Link Algorithm
+	 * The column is chosen by DLXConfig.getColumnHeuristic().
 	 *
 	 * @return reference to a column object
 	 */
 	private DLXColumnHeader chooseColumnObject() {
-		boolean minimizeBranchingFactor = true;
-
-		/* Choose the first column */
-		DLXColumnHeader c = DLA.H.R;
-
-		/* Choose the column with the smallest size or choose the leftmost */
-		if (minimizeBranchingFactor) {
-			int s = Integer.MAX_VALUE;
-			for (DLXColumnHeader h = c; h != DLA.H; h = h.R) {
-				/* skip tiles' column when extra tiles exist */
-				if (Config.isEnableExtra() && h.col < DLA.numTiles) continue;
-
-				/* skip duplicated tiles' column */
-				if (Config.eliminateDuplica() && h.col < DLA.numTiles) {
-					if(Config.duplica()[h.col] != h.col) continue;
-				}
-
-				/* choose the minimum */
-				if (h.S < s) {
-					c = h;
-					s = h.S;
-				}
-			}
-		} else {
-			/* Deal with extra tiles: skip tile columns */
-			if (Config.isEnableExtra()) {
-				while (c.col >= 0 && c.col < DLA.numTiles) c = c.R;
-			}
-
-			/* Deal with duplication: skip duplicated tile columns */
-			if (Config.eliminateDuplica()) {
-				while (c.col >= 0 && c.col < DLA.numTiles
-						&& Config.duplica()[c.col] != c.col) c = c.R;
-			}
-		}
-
-		//if (Config.verb) System.out.println("Choose column c" + c.col);
-		return c;
+		return Config.getColumnHeuristic().choose(DLA);
 	}
 
 	/**
@@ -261,39 +550,90 @@ public class DLXBasicSearch {
 	}
 
 	/**
-	 * Cover Column - Part of the Dancing Link Algorithm
+	 * Cover all the columns of a row.
 	 *
-	 * @param c
+	 * @param x
 	 */
-	private void coverColumn(DLXColumnHeader c) {
-		//if (Config.verb) System.out.println("Cover c" + c.col);
-		c.R.L = c.L;
-		c.L.R = c.R;
-		for (DLXCell i = c.D; i != c; i = i.D) {
-			for (DLXCell j = i.R; j != i; j = j.R) {
-				j.D.U = j.U;
-				j.U.D = j.D;
-				j.C.S -= 1;
+	private void coverRow(DLXCell x) {
+		DLA.cover(x.C);
+		for (DLXCell i = x.R; i != x; i = i.R) {
+			DLA.cover(i.C);
+		}
+		if (Pruner != null) {
+			Pruner.place(x);
+			Invariants.place(x);
+		}
+	}
+
+	/**
+	 * Place the rows of columns which have a single row left, one after
+	 * another, until a column with zero or several rows is chosen. The
+	 * placed rows are pushed to Solution after the branch row.
+	 * @return the chosen column, or null if a forced row cannot be used
+	 */
+	private DLXColumnHeader propagate() {
+		int forced = 0;
+		DLXColumnHeader c = chooseColumnObject();
+		while (c.S == 1) {
+			DLXCell f = c.D;
+			if (Config.eliminateDuplica() && !duplicatedTileUsedInOrder(f)) {
+				c = null;
+				break;
 			}
+			Solution.push(f);
+			coverRow(f);
+			forced++;
+			c = chooseColumnObject();
+		}
+		pushUnit(forced);
+		Stats.forced += forced;
+		if (forced > 0 && (c == null || c.S == 0)) Stats.forcedFailures++;
+		return c;
+	}
+
+	/**
+	 * Start an undo unit of a branch row and its forced rows.
+	 * @param forced
+	 */
+	private void pushUnit(int forced) {
+		if (forcedCount.length == units) {
+			forcedCount = Arrays.copyOf(forcedCount, units * 2);
+		}
+		forcedCount[units++] = forced;
+	}
+
+	/**
+	 * Return the branch row of the last undo unit of Solution.
+	 * @return
+	 */
+	private DLXCell lastBranch() {
+		return Solution.get(Solution.size() - 1 - forcedCount[units - 1]);
+	}
+
+	/**
+	 * Undo the last unit of Solution: its forced rows and its branch row.
+	 */
+	private void popUnit() {
+		for (int k = forcedCount[--units]; k > 0; k--) {
+			uncoverRow(Solution.pop());
 		}
+		uncoverRow(Solution.pop());
 	}
 
 	/**
-	 * Uncover Column - Part of the Dancing Link Algorithm
+	 * Uncover all the columns of a row in the reverse order of covering.
 	 *
-	 * @param c
+	 * @param t
 	 */
-	private void uncoverColumn(DLXColumnHeader c) {
-		//if (Config.verb) System.out.println("Uncover c" + c.col);
-		for (DLXCell i = c.U; i != c; i = i.U) {
-			for (DLXCell j = i.L; j != i; j = j.L) {
-				j.C.S += 1;
-				j.D.U = j;
-				j.U.D = j;
-			}
+	private void uncoverRow(DLXCell t) {
+		if (Pruner != null) {
+			Pruner.remove(t);
+			Invariants.remove(t);
 		}
-		c.R.L = c;
-		c.L.R = c;
+		for (DLXCell i = t.L; i != t; i = i.L) {
+			DLA.uncover(i.C);
+		}
+		DLA.uncover(t.C);
 	}
 
 	/**
@@ -306,42 +646,61 @@ public class DLXBasicSearch {
 
 		/* Directly Failed */
 		if (Config.isDirectlyFail()) {
-			Config.setSearchFinished(true);
+			State.setSearchFinished(true);
 			return;
 		}
 
 		/* If start from an empty trail */
-		if (!Config.searchFinished() && trail.isEmpty()) {
+		if (!State.searchFinished() && trail.isEmpty()) {
 			DLXColumnHeader c = chooseFirstColumnObject();
 			pushFirstLevelSearch(trail, c);
+			if (sliceCount > 1) keepFirstLevelSlice(trail);
 		}
 
 		/* Search kernel */
 		do {
+			/* Cancelled by another thread */
+			if (State.cancelled()) {
+				State.setSearchFinished(true);
+				break;
+			}
+
 			/* Backtracking */
-			while (!Solution.isEmpty() && Solution.top() == trail.top()) {
-				DLXCell t = Solution.pop();
+			while (!Solution.isEmpty() && lastBranch() == trail.top()) {
 				trail.pop();
-				for (DLXCell i = t.L; i != t; i = i.L) {
-					uncoverColumn(i.C);
-				}
-				uncoverColumn(t.C);
+				popUnit();
 			}
 			if (trail.size() == 0) {
-				Config.setSearchFinished(true);
+				State.setSearchFinished(true);
 				break; // finished
 			}
 
 			/* Search a cell */
 			DLXCell x = trail.top();
+			int unitStart = Solution.size();
 			Solution.push(x);
-			coverColumn(x.C);
-			for (DLXCell i = x.R; i != x; i = i.R) {
-				coverColumn(i.C);
+			State.countNode();
+			coverRow(x);
+
+			/* Place forced rows, then search next level */
+			DLXColumnHeader c;
+			if (Config.isEnablePropagation()) {
+				c = propagate();
+				if (c == null) continue;
+			} else {
+				pushUnit(0);
+				c = chooseColumnObject();
+			}
+			/* Fail if the placed rows cut off a region no tiles can fill */
+			if (c.S > 0 && Pruner != null && Config.isEnableRegionPruning()
+					&& Pruner.isDead(Solution, unitStart)) {
+				continue;
+			}
+			/* Fail if the uncovered cells break a coloring invariant */
+			if (c.S > 0 && Invariants != null && Config.isEnableColoring()
+					&& Invariants.isDead()) {
+				continue;
 			}
-
-			/* Search next level */
-			DLXColumnHeader c = chooseColumnObject();
 			if (c.S > 0) {
 				pushNextLevelSearch(trail, c);
 				continue;
@@ -355,8 +714,9 @@ public class DLXBasicSearch {
 					Solution.setComplete(true);
 				}
 			}
-		} while (!Config.singleStepSearch() &&
-				!(Config.singleSolutionSearch() && Solution.isComplete()));
+		} while (!State.singleStepSearch() &&
+				!(State.singleSolutionSearch() && Solution.isComplete()) &&
+				State.nodes() < State.nodeLimit());
 
 		return;
 	}
@@ -404,20 +764,20 @@ public class DLXBasicSearch {
 			return;
 		}
 		DLXColumnHeader c = chooseColumnObject();
-		coverColumn(c);
+		DLA.cover(c);
 		for (DLXCell r = c.D; r != c; r = r.D) {
 			Solution.push(r);
 			for (DLXCell j = r.R; j != r; j = j.R) {
-				coverColumn(j.C);
+				DLA.cover(j.C);
 			}
 			searchRecur(k + 1);
 			r = Solution.pop();
 			c = r.C;
 			for (DLXCell j = r.L; j != r; j = j.L) {
-				uncoverColumn(j.C);
+				DLA.uncover(j.C);
 			}
 		}
-		uncoverColumn(c);
+		DLA.uncover(c);
 
 		return;
 	}
@@ -0,0 +1,470 @@
+package dlx;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import util.DataFileParser;
+import util.Tile;
+
+/**
+ * DLX Board Family Batch Solver
+ *
+ * Solves one tile set on many related boards, e.g. the pentominoes8x8_*
+ * boards which only differ in their holes. Boards of the same size are merged
+ * into a union board, the placements are generated once on the union board,
+ * and the rows of each board are derived by dropping the placements which
+ * cover one of its holes. The boards are then solved concurrently, each with
+ * its own configuration, search state and symmetry checks.
+ *
+ * @author Deyuan Guo, Dawei Fan
+ */
+public class DLXBoardFamily {
+
+	/******************** Public Member Variables ********************/
+
+	/**
+	 * Result record of one board.
+	 */
+	public static class Result {
+		/** The name of the board */
+		public String name;
+		/** The number of board cells */
+		public int cells;
+		/** The number of placement rows after filtering */
+		public int rows;
+		/** The number of solutions */
+		public long solutions;
+		/** The first solution, null if there is none */
+		public List<List<Integer>> first;
+		/** Search time in milliseconds */
+		public double millis;
+		/** False if the search was interrupted; the counts are partial */
+		public boolean complete = false;
+
+		@Override
+		public String toString() {
+			return name + ": " + solutions + " solutions"
+					+ (complete ? "" : " (incomplete)") + ", " + cells
+					+ " cells, " + rows + " rows, " + millis + " ms";
+		}
+	}
+
+	/******************** Private Member Variables ********************/
+
+	/** The shared tile list */
+	private List<Tile> tiles = null;
+
+	/** Options (spin, flip, symmetry) copied to the configuration of every
+	 * board */
+	private DLXConfig options = null;
+
+	/** The duplica rings of the tile list */
+	private int[][] rings = null;
+
+	/** The total area of the tiles */
+	private int tileArea = 0;
+
+	/******************** Public Member Functions ********************/
+
+	/**
+	 * Constructor of DLXBoardFamily
+	 * @param t - the tile list in area descending order
+	 * @param config - spin/flip/symmetry options
+	 */
+	public DLXBoardFamily(List<Tile> t, DLXConfig config) {
+		tiles = t;
+		options = config;
+
+		DLXConfig c = new DLXConfig();
+		c.verb = false;
+		c.recognizeDuplica(tiles);
+		rings = c.getDuplicaRings();
+		for (Tile i: tiles) tileArea += i.area;
+	}
+
+	/**
+	 * Load a family from puzzle files. All files must have the same tiles
+	 * (in any order), the tiles of the first file are used. Puzzles drawn
+	 * with a single character are recolored with the character of the first
+	 * file.
+	 * @param paths
+	 * @param boards - output, the board of each file
+	 * @param config - spin/flip/symmetry options
+	 * @return
+	 */
+	public static DLXBoardFamily fromFiles(List<String> paths,
+			List<Tile> boards, DLXConfig config) {
+		List<Tile> tiles = null;
+		char color = 0;
+		for (String p: paths) {
+			List<Tile> t = new DataFileParser(p).ExtractTiles();
+			if (t.isEmpty())
+				throw new IllegalArgumentException("Empty puzzle " + p);
+			char c = singleColor(t);
+			if (tiles == null) {
+				color = c;
+			} else if (c != 0 && color != 0 && c != color) {
+				for (int i = 0; i < t.size(); i++)
+					t.set(i, recolor(t.get(i), color));
+			}
+			boards.add(t.remove(0));
+			if (tiles == null) {
+				tiles = t;
+			} else if (!sameTiles(tiles, t)) {
+				throw new IllegalArgumentException("Tiles of " + p
+						+ " differ from the tiles of " + paths.get(0));
+			}
+		}
+		return new DLXBoardFamily(tiles, config);
+	}
+
+	/**
+	 * Solve all boards.
+	 * @param boards
+	 * @param names - the name of each board
+	 * @param threads - the number of concurrent searches
+	 * @return one result per board, in the order of boards; if the calling
+	 * thread is interrupted, the searches are cancelled, the interrupt flag
+	 * is set again and the boards not finished have incomplete results
+	 */
+	public List<Result> solve(List<Tile> boards, List<String> names,
+			int threads) {
+		/* Generate rows once per group of compatible boards. */
+		List<Callable<Result>> jobs = new ArrayList<Callable<Result>>();
+		List<DLXSearchState> running = new ArrayList<DLXSearchState>();
+		AtomicBoolean cancelled = new AtomicBoolean(false);
+		for (int b = 0; b < boards.size(); b++) jobs.add(null);
+		for (List<Integer> group: groupBoards(boards)) {
+			char[][] union = unionBoard(boards, group);
+			DLXConfig c = new DLXConfig();
+			c.verb = false;
+			c.setEnableSpin(options.isEnableSpin());
+			c.setEnableSpinFlip(options.isEnableSpinFlip());
+			DLXBasicExactCoverArray eca =
+					new DLXBasicExactCoverArray(new Tile(union), tiles, c);
+			for (int b: group) {
+				jobs.set(b, newJob(eca, union, boards.get(b), names.get(b),
+						running, cancelled));
+			}
+		}
+
+		/* Solve the boards concurrently. */
+		ExecutorService pool = Executors.newFixedThreadPool(
+				Math.max(1, threads));
+		List<Future<Result>> futures = new ArrayList<Future<Result>>();
+		for (Callable<Result> job: jobs) futures.add(pool.submit(job));
+		pool.shutdown();
+		List<Result> results = new ArrayList<Result>();
+		boolean interrupted = false;
+		for (int b = 0; b < futures.size(); b++) {
+			Future<Result> f = futures.get(b);
+			Result r = null;
+			try {
+				/* After an interrupt only the finished boards are taken */
+				if (!interrupted || f.isDone()) r = f.get();
+			} catch (InterruptedException e) {
+				interrupted = true;
+				synchronized (running) {
+					cancelled.set(true);
+					for (DLXSearchState st: running) st.setCancelled(true);
+				}
+				pool.shutdownNow();
+			} catch (ExecutionException e) {
+				throw new RuntimeException(e.getCause());
+			}
+			if (r == null) {
+				r = new Result();
+				r.name = names.get(b);
+			}
+			results.add(r);
+		}
+		if (interrupted) Thread.currentThread().interrupt();
+		return results;
+	}
+
+	/******************** Private Member Functions ********************/
+
+	/**
+	 * Group the boards which can share a union board: same size and no
+	 * cell with different characters.
+	 * @param boards
+	 * @return lists of board indices
+	 */
+	private List<List<Integer>> groupBoards(List<Tile> boards) {
+		List<List<Integer>> groups = new ArrayList<List<Integer>>();
+		for (int b = 0; b < boards.size(); b++) {
+			List<Integer> found = null;
+			for (List<Integer> g: groups) {
+				boolean ok = true;
+				for (int i: g) {
+					if (!compatible(boards.get(i).data, boards.get(b).data)) {
+						ok = false;
+						break;
+					}
+				}
+				if (ok) {
+					found = g;
+					break;
+				}
+			}
+			if (found == null) {
+				found = new ArrayList<Integer>();
+				groups.add(found);
+			}
+			found.add(b);
+		}
+		return groups;
+	}
+
+	private static boolean compatible(char[][] a, char[][] b) {
+		if (a.length != b.length || a[0].length != b[0].length) return false;
+		for (int r = 0; r < a.length; r++) {
+			for (int c = 0; c < a[0].length; c++) {
+				if (a[r][c] != ' ' && b[r][c] != ' ' && a[r][c] != b[r][c])
+					return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Build the union board of a group.
+	 * @param boards
+	 * @param group
+	 * @return
+	 */
+	private static char[][] unionBoard(List<Tile> boards, List<Integer> group) {
+		char[][] first = boards.get(group.get(0)).data;
+		char[][] u = new char[first.length][first[0].length];
+		for (int r = 0; r < u.length; r++) {
+			for (int c = 0; c < u[0].length; c++) {
+				u[r][c] = ' ';
+				for (int b: group) {
+					if (boards.get(b).data[r][c] != ' ') {
+						u[r][c] = boards.get(b).data[r][c];
+						break;
+					}
+				}
+			}
+		}
+		return u;
+	}
+
+	/**
+	 * Create the job solving one board with the rows of its union board.
+	 * @param eca - rows of the union board
+	 * @param union
+	 * @param board
+	 * @param name
+	 * @return
+	 */
+	private Callable<Result> newJob(final DLXBasicExactCoverArray eca,
+			final char[][] union, final Tile board, final String name,
+			final List<DLXSearchState> running, final AtomicBoolean cancelled) {
+		return new Callable<Result>() {
+			@Override
+			public Result call() {
+				return solveBoard(eca, union, board, name, running, cancelled);
+			}
+		};
+	}
+
+	/**
+	 * Derive the rows of a board from the union rows and count solutions.
+	 * @param eca
+	 * @param union
+	 * @param board
+	 * @param name
+	 * @param running - the search states to cancel on an interrupt
+	 * @param cancelled - set with the running lock held on an interrupt
+	 * @return
+	 */
+	private Result solveBoard(DLXBasicExactCoverArray eca, char[][] union,
+			Tile board, String name, List<DLXSearchState> running,
+			AtomicBoolean cancelled) {
+		long start = System.nanoTime();
+
+		/* Map union cell indices to board cell indices, -1 for holes. */
+		int[] cellMap = new int[eca.numCells];
+		int u = 0, n = 0;
+		for (int r = 0; r < union.length; r++) {
+			for (int c = 0; c < union[0].length; c++) {
+				if (union[r][c] == ' ') continue;
+				cellMap[u++] = (board.data[r][c] != ' ') ? n++ : -1;
+			}
+		}
+
+		/* Drop the placements covering a hole. */
+		int numTiles = eca.numTiles;
+		int[] start0 = new int[eca.numRows + 1];
+		int[] cols = new int[eca.numEntries];
+		byte[] orient = new byte[eca.numRows];
+		int rows = 0, k = 0;
+		for (int i = 0; i < eca.numRows; i++) {
+			int b = k;
+			boolean keep = true;
+			for (int j = eca.rowStart[i]; j < eca.rowStart[i + 1]; j++) {
+				int col = eca.rowCols[j];
+				if (col >= numTiles) {
+					int cell = cellMap[col - numTiles];
+					if (cell < 0) {
+						keep = false;
+						break;
+					}
+					col = numTiles + cell;
+				}
+				cols[k++] = col;
+			}
+			if (keep) {
+				start0[rows] = b;
+				orient[rows] = eca.rowOrient[i];
+				rows++;
+			} else {
+				k = b;
+			}
+		}
+		start0[rows] = k;
+		IntBuffer rowStart = IntBuffer.wrap(start0, 0, rows + 1).slice();
+
+		/* Per board configuration and search. */
+		DLXConfig config = new DLXConfig();
+		config.verb = false;
+		config.board = board;
+		config.tiles = tiles;
+		config.setEnableSpin(options.isEnableSpin());
+		config.setEnableSpinFlip(options.isEnableSpinFlip());
+		config.setEliminateSymmetry(options.eliminateSymmetry());
+		config.setDuplicaRings(rings[0], rings[1], rings[2]);
+		config.setEnableExtra(tileArea > board.area);
+		config.setTileAreaNotEnough(tileArea < board.area);
+		config.autoSetEliminateDuplica();
+
+		DLXBasicLinksArray dla = new DLXBasicLinksArray(numTiles, n,
+				rowStart, IntBuffer.wrap(cols, 0, k).slice(),
+				ByteBuffer.wrap(orient), config);
+		dla.chooseLeaderTile();
+		DLXBasicSearch search = new DLXBasicSearch(dla, config);
+		search.prepare();
+		synchronized (running) {
+			if (cancelled.get()) search.getState().setCancelled(true);
+			running.add(search.getState());
+		}
+
+		/* Symmetric solutions not eliminated by the leader tile are dropped
+		 * by comparing their views, as in DLX.nextSolution(). */
+		boolean checkViews = config.eliminateSymmetry()
+				&& board.sfpattern.size() != 8;
+		DLXSymmetry symmetry = new DLXSymmetry(config);
+		List<int[][]> views = new ArrayList<int[][]>();
+
+		Result res = new Result();
+		res.name = name;
+		res.cells = n;
+		res.rows = rows;
+		while (true) {
+			List<List<Integer>> sol = search.solveSingleSolution();
+			if (!search.isCompleteSolution()) break;
+			if (checkViews
+					&& !search.getState().symmetryEliminatedByLeader()) {
+				int[][] view = symmetry.solutionView(sol);
+				if (!symmetry.isAsymmetricList(view, views)) continue;
+				views.add(view);
+			}
+			if (res.first == null) res.first = sol;
+			res.solutions++;
+		}
+		res.complete = !search.getState().cancelled();
+		res.millis = (System.nanoTime() - start) / 1000000.0;
+		return res;
+	}
+
+	/**
+	 * Return the only character of a puzzle, or 0 if it uses more.
+	 * @param tiles - the board and the tiles
+	 * @return
+	 */
+	private static char singleColor(List<Tile> tiles) {
+		char color = 0;
+		for (Tile t: tiles) {
+			for (char[] row: t.data) {
+				for (char ch: row) {
+					if (ch == ' ' || ch == color) continue;
+					if (color != 0) return 0;
+					color = ch;
+				}
+			}
+		}
+		return color;
+	}
+
+	/**
+	 * Return a copy of a tile with all its cells drawn with one character.
+	 * @param t
+	 * @param color
+	 * @return
+	 */
+	private static Tile recolor(Tile t, char color) {
+		char[][] d = new char[t.data.length][];
+		for (int i = 0; i < d.length; i++) {
+			d[i] = t.data[i].clone();
+			for (int j = 0; j < d[i].length; j++) {
+				if (d[i][j] != ' ') d[i][j] = color;
+			}
+		}
+		return new Tile(d);
+	}
+
+	/**
+	 * Determine if two tile lists hold the same tiles, in any order.
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	private static boolean sameTiles(List<Tile> a, List<Tile> b) {
+		if (a.size() != b.size()) return false;
+		boolean[] matched = new boolean[b.size()];
+		for (Tile t: a) {
+			boolean found = false;
+			for (int i = 0; i < b.size() && !found; i++) {
+				if (!matched[i] && t.equal(b.get(i))) {
+					matched[i] = true;
+					found = true;
+				}
+			}
+			if (!found) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Solve the boards of the given puzzle files.
+	 * @param args - puzzle files
+	 */
+	public static void main(String args[]) {
+		List<String> paths = new ArrayList<String>();
+		List<String> names = new ArrayList<String>();
+		for (String a: args) {
+			paths.add(a);
+			names.add(new File(a).getName());
+		}
+		DLXConfig config = new DLXConfig();
+		config.setEnableSpin(true);
+		config.setEnableSpinFlip(true);
+		List<Tile> boards = new ArrayList<Tile>();
+		DLXBoardFamily family = fromFiles(paths, boards, config);
+		int threads = Runtime.getRuntime().availableProcessors();
+		for (Result r: family.solve(boards, names, threads)) {
+			System.out.println(r);
+		}
+	}
+
+}
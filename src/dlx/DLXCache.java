@@ -0,0 +1,346 @@
+package dlx;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * DLX Preprocess Cache
+ *
+ * A content-addressed on-disk cache of preprocessed puzzles. Each entry keeps
+ * the sparse exact cover rows with their orientation classes, the duplica
+ * rings and the leader tiles of one puzzle text with one set of
+ * spin/flip/extra options, so DLXBasicLinksArray can be built without
+ * parsing the puzzle or generating the rows again.
+ * Entries are memory-mapped on load, and the least recently used entries are
+ * deleted once the cache grows beyond its size limit.
+ *
+ * @author Deyuan Guo, Dawei Fan
+ */
+public class DLXCache {
+
+	/******************** Public Member Variables ********************/
+
+	/** File name suffix of cache entries */
+	public static final String SUFFIX = ".dlxc";
+
+	/******************** Private Member Variables ********************/
+
+	/** Magic number and format version of the entry files */
+	private static final int MAGIC = 0x444c5843; // "DLXC"
+	private static final int VERSION = 2;
+
+	/** The size of the fixed header in bytes: magic, version, numTiles,
+	 *  numCells, numRows, numEntries, 3 leader ids, flags, rows, cols */
+	private static final int HEADER = 12 * 4;
+
+	/** The cache directory */
+	private File dir = null;
+
+	/** The maximum total size of all entries in bytes */
+	private long maxBytes = 0;
+
+	/******************** Public Member Functions ********************/
+
+	/**
+	 * A preprocessed puzzle. The sparse rows are views of the mapped file
+	 * when the entry is loaded from disk.
+	 */
+	public static class Entry {
+		public int numTiles = 0;
+		public int numCells = 0;
+		public IntBuffer rowStart = null;
+		public IntBuffer rowCols = null;
+		public ByteBuffer rowOrient = null;
+		public int[] duplica = null;
+		public int[] duplicaS = null;
+		public int[] duplicaSF = null;
+		/** Leader tile for the fixed, spin and spin/flip masks */
+		public int[] leaderIds = null;
+		public boolean enableExtra = false;
+		public boolean tileAreaNotEnough = false;
+		public char[][] board = null;
+
+		public int numRows() { return rowStart.limit() - 1; }
+	}
+
+	/**
+	 * Constructor of DLXCache
+	 * @param directory - the cache directory, created if missing
+	 * @param maxSize - the maximum total size of the entries in bytes
+	 */
+	public DLXCache(File directory, long maxSize) {
+		dir = directory;
+		maxBytes = maxSize;
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			System.out.println("Cannot create cache directory " + dir);
+		}
+	}
+
+	/**
+	 * Compute the cache key of a puzzle: a SHA-256 hash of the puzzle text
+	 * and the spin/flip/extra options.
+	 * @param puzzleText
+	 * @param config
+	 * @return hex string of the hash
+	 */
+	public static String key(String puzzleText, DLXConfig config) {
+		return key(puzzleText, config.isEnableSpin(),
+				config.isEnableSpinFlip(), config.isEnableExtra());
+	}
+
+	/**
+	 * Compute the cache key of a puzzle with explicit options.
+	 * @param puzzleText
+	 * @param spin
+	 * @param flip
+	 * @param extra
+	 * @return hex string of the hash
+	 */
+	public static String key(String puzzleText, boolean spin, boolean flip,
+			boolean extra) {
+		String options = "\0spin=" + spin + ";flip=" + flip
+				+ ";extra=" + extra;
+		MessageDigest md;
+		try {
+			md = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		Charset utf8 = Charset.forName("UTF-8");
+		md.update(puzzleText.getBytes(utf8));
+		md.update(options.getBytes(utf8));
+		StringBuilder sb = new StringBuilder();
+		for (byte b: md.digest()) {
+			sb.append(String.format("%02x", b & 0xff));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Load an entry by memory-mapping its file.
+	 * @param key
+	 * @return the entry, or null on a cache miss
+	 */
+	public Entry load(String key) {
+		File f = new File(dir, key + SUFFIX);
+		if (!f.isFile()) return null;
+
+		MappedByteBuffer buf;
+		try {
+			RandomAccessFile raf = new RandomAccessFile(f, "r");
+			try {
+				FileChannel ch = raf.getChannel();
+				if (ch.size() > Integer.MAX_VALUE) return null;
+				buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+			} finally {
+				raf.close();
+			}
+		} catch (IOException e) {
+			System.out.println("Cannot read cache entry " + f + ": "
+					+ e.getMessage());
+			return null;
+		}
+		if (buf.capacity() < HEADER || buf.getInt(0) != MAGIC
+				|| buf.getInt(4) != VERSION) {
+			return null;
+		}
+
+		/* Header */
+		Entry e = new Entry();
+		buf.position(8);
+		e.numTiles = buf.getInt();
+		e.numCells = buf.getInt();
+		int numRows = buf.getInt();
+		int numEntries = buf.getInt();
+		e.leaderIds = readInts(buf, 3);
+		int flags = buf.getInt();
+		e.enableExtra = (flags & 1) != 0;
+		e.tileAreaNotEnough = (flags & 2) != 0;
+		int rows = buf.getInt();
+		int cols = buf.getInt();
+		if (e.numTiles < 0 || numRows < 0 || numEntries < 0 || rows < 0
+				|| cols < 0) {
+			return null;
+		}
+		long expected = entrySize(e.numTiles, numRows, numEntries, rows, cols);
+		if (buf.capacity() != expected) return null;
+
+		/* Board */
+		e.board = new char[rows][cols];
+		for (int i = 0; i < rows; i++)
+			for (int j = 0; j < cols; j++)
+				e.board[i][j] = buf.getChar();
+
+		/* Duplica rings */
+		e.duplica = readInts(buf, e.numTiles);
+		e.duplicaS = readInts(buf, e.numTiles);
+		e.duplicaSF = readInts(buf, e.numTiles);
+
+		/* Sparse rows, kept in the mapped file */
+		e.rowStart = sliceInts(buf, numRows + 1);
+		e.rowCols = sliceInts(buf, numEntries);
+		e.rowOrient = buf.slice();
+
+		/* Mark as recently used */
+		f.setLastModified(System.currentTimeMillis());
+		return e;
+	}
+
+	/**
+	 * Store an entry and evict old entries if the cache is too large.
+	 * @param key
+	 * @param e
+	 */
+	public void store(String key, Entry e) {
+		int numRows = e.numRows();
+		int numEntries = e.rowCols.limit();
+		int rows = e.board.length;
+		int cols = rows > 0 ? e.board[0].length : 0;
+		long size = entrySize(e.numTiles, numRows, numEntries, rows, cols);
+		if (size > Integer.MAX_VALUE) {
+			System.out.println("Cache entry " + key + " is too large ("
+					+ size + " bytes), not stored");
+			return;
+		}
+
+		ByteBuffer buf = ByteBuffer.allocate((int) size);
+		buf.putInt(MAGIC);
+		buf.putInt(VERSION);
+		buf.putInt(e.numTiles);
+		buf.putInt(e.numCells);
+		buf.putInt(numRows);
+		buf.putInt(numEntries);
+		for (int i = 0; i < 3; i++) buf.putInt(e.leaderIds[i]);
+		buf.putInt((e.enableExtra ? 1 : 0) | (e.tileAreaNotEnough ? 2 : 0));
+		buf.putInt(rows);
+		buf.putInt(cols);
+		for (int i = 0; i < rows; i++)
+			for (int j = 0; j < cols; j++)
+				buf.putChar(e.board[i][j]);
+		for (int i = 0; i < e.numTiles; i++) buf.putInt(e.duplica[i]);
+		for (int i = 0; i < e.numTiles; i++) buf.putInt(e.duplicaS[i]);
+		for (int i = 0; i < e.numTiles; i++) buf.putInt(e.duplicaSF[i]);
+		for (int i = 0; i <= numRows; i++) buf.putInt(e.rowStart.get(i));
+		for (int i = 0; i < numEntries; i++) buf.putInt(e.rowCols.get(i));
+		for (int i = 0; i < numRows; i++) buf.put(e.rowOrient.get(i));
+		buf.flip();
+
+		/* Write to a temporary file first, so readers never see a partial
+		 * entry. */
+		File tmp = new File(dir, key + ".tmp");
+		File f = new File(dir, key + SUFFIX);
+		try {
+			RandomAccessFile raf = new RandomAccessFile(tmp, "rw");
+			try {
+				raf.setLength(0);
+				FileChannel ch = raf.getChannel();
+				while (buf.hasRemaining()) ch.write(buf);
+			} finally {
+				raf.close();
+			}
+			if (f.exists()) f.delete();
+			if (!tmp.renameTo(f)) {
+				tmp.delete();
+				return;
+			}
+		} catch (IOException ex) {
+			System.out.println("Cannot write cache entry " + f + ": "
+					+ ex.getMessage());
+			tmp.delete();
+			return;
+		}
+
+		evict();
+	}
+
+	/**
+	 * Return the total size of all entries in bytes.
+	 * @return
+	 */
+	public long size() {
+		long total = 0;
+		for (File f: entries()) total += f.length();
+		return total;
+	}
+
+	/**
+	 * Delete all entries.
+	 */
+	public void clear() {
+		for (File f: entries()) f.delete();
+	}
+
+	/******************** Private Member Functions ********************/
+
+	/**
+	 * Return the size of an entry file in bytes, computed in long so that
+	 * large boards and row counts do not overflow.
+	 * @return
+	 */
+	private static long entrySize(int numTiles, int numRows, int numEntries,
+			int rows, int cols) {
+		return HEADER + (long) rows * cols * 2
+				+ (3L * numTiles + numRows + 1 + numEntries) * 4 + numRows;
+	}
+
+	/**
+	 * Delete the least recently used entries until the cache fits in its
+	 * size limit.
+	 */
+	private void evict() {
+		File[] files = entries();
+		long total = 0;
+		for (File f: files) total += f.length();
+		if (total <= maxBytes) return;
+
+		Arrays.sort(files, new Comparator<File>() {
+			@Override
+			public int compare(File a, File b) {
+				long d = a.lastModified() - b.lastModified();
+				return d < 0 ? -1 : (d > 0 ? 1 : 0);
+			}
+		});
+		for (int i = 0; i < files.length && total > maxBytes; i++) {
+			long len = files[i].length();
+			if (files[i].delete()) total -= len;
+		}
+	}
+
+	/**
+	 * List all the entry files in the cache directory.
+	 * @return
+	 */
+	private File[] entries() {
+		File[] files = dir.listFiles();
+		if (files == null) return new File[0];
+		int n = 0;
+		for (File f: files) {
+			if (f.getName().endsWith(SUFFIX)) files[n++] = f;
+		}
+		return Arrays.copyOf(files, n);
+	}
+
+	private static int[] readInts(ByteBuffer buf, int n) {
+		int[] a = new int[n];
+		for (int i = 0; i < n; i++) a[i] = buf.getInt();
+		return a;
+	}
+
+	private static IntBuffer sliceInts(ByteBuffer buf, int n) {
+		IntBuffer ib = buf.slice().asIntBuffer();
+		ib.limit(n);
+		buf.position(buf.position() + n * 4);
+		return ib;
+	}
+
+}
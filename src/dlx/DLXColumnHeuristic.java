@@ -0,0 +1,130 @@
+package dlx;
+
+/**
+ * DLX Column Heuristic
+ *
+ * Chooses the column the search branches on next. The columns which are
+ * not covered are the candidates, and only the columns accepted by
+ * DLXBasicLinksArray.isBranchColumn() may be chosen. A column of size 0
+ * may be returned, which fails the branch at once; if no column may be
+ * chosen, the heuristic returns the first column (the head when all
+ * columns are covered), which the search reads as a solution.
+ *
+ * The heuristic is selected by DLXConfig.setColumnHeuristic(); the
+ * built-in heuristics are listed in BUILT_IN, and their names are used by
+ * the command line tools.
+ *
+ * @author Deyuan Guo, Dawei Fan
+ */
+public interface DLXColumnHeuristic {
+
+	/**
+	 * Choose the column to branch on.
+	 * @param dla - the links of the search
+	 * @return
+	 */
+	DLXColumnHeader choose(DLXBasicLinksArray dla);
+
+	/** The column with the fewest rows, the leftmost on a tie (Knuth) */
+	DLXColumnHeuristic MIN_SIZE = new DLXColumnHeuristic() {
+		@Override
+		public DLXColumnHeader choose(DLXBasicLinksArray dla) {
+			DLXColumnHeader c = dla.H.R;
+			int s = Integer.MAX_VALUE;
+			for (DLXColumnHeader h = dla.H.R; h != dla.H; h = h.R) {
+				if (h.S < s && dla.isBranchColumn(h)) {
+					c = h;
+					s = h.S;
+				}
+			}
+			return c;
+		}
+		@Override
+		public String toString() { return "min-size"; }
+	};
+
+	/** The leftmost column: the tiles in order, then the cells */
+	DLXColumnHeuristic LEFTMOST = new DLXColumnHeuristic() {
+		@Override
+		public DLXColumnHeader choose(DLXBasicLinksArray dla) {
+			for (DLXColumnHeader h = dla.H.R; h != dla.H; h = h.R) {
+				if (dla.isBranchColumn(h)) return h;
+			}
+			return dla.H.R;
+		}
+		@Override
+		public String toString() { return "leftmost"; }
+	};
+
+	/** The first uncovered cell in reading order of the board, so the
+	 *  board fills up row by row */
+	DLXColumnHeuristic FIRST_CELL = new DLXColumnHeuristic() {
+		@Override
+		public DLXColumnHeader choose(DLXBasicLinksArray dla) {
+			for (DLXColumnHeader h = dla.H.R; h != dla.H; h = h.R) {
+				if (h.col >= dla.numTiles) return h;
+			}
+			return MIN_SIZE.choose(dla);
+		}
+		@Override
+		public String toString() { return "first-cell"; }
+	};
+
+	/** The uncovered cell with the fewest uncovered neighbours, the one
+	 *  with the fewest rows on a tie; corners and dead ends go first */
+	DLXColumnHeuristic FEWEST_NEIGHBOURS = new DLXColumnHeuristic() {
+		@Override
+		public DLXColumnHeader choose(DLXBasicLinksArray dla) {
+			int[][] nbr = dla.cellNeighbours();
+			if (nbr == null) return MIN_SIZE.choose(dla);
+			DLXColumnHeader c = null;
+			int best = Integer.MAX_VALUE, s = Integer.MAX_VALUE;
+			for (DLXColumnHeader h = dla.H.R; h != dla.H; h = h.R) {
+				if (h.col < dla.numTiles) continue;
+				int free = 0;
+				for (int q: nbr[h.col - dla.numTiles]) {
+					if (!dla.isCovered(q + dla.numTiles)) free++;
+				}
+				if (free < best || (free == best && h.S < s)) {
+					c = h;
+					best = free;
+					s = h.S;
+				}
+			}
+			return c != null ? c : MIN_SIZE.choose(dla);
+		}
+		@Override
+		public String toString() { return "fewest-neighbours"; }
+	};
+
+	/** The cell with the fewest rows, or a tile column only when it has
+	 *  fewer rows than every cell */
+	DLXColumnHeuristic CELLS_FIRST = new DLXColumnHeuristic() {
+		@Override
+		public DLXColumnHeader choose(DLXBasicLinksArray dla) {
+			DLXColumnHeader cell = null, tile = null;
+			int cs = Integer.MAX_VALUE, ts = Integer.MAX_VALUE;
+			for (DLXColumnHeader h = dla.H.R; h != dla.H; h = h.R) {
+				if (h.col >= dla.numTiles) {
+					if (h.S < cs) {
+						cell = h;
+						cs = h.S;
+					}
+				} else if (h.S < ts && dla.isBranchColumn(h)) {
+					tile = h;
+					ts = h.S;
+				}
+			}
+			if (tile != null && ts < cs) return tile;
+			return cell != null ? cell : MIN_SIZE.choose(dla);
+		}
+		@Override
+		public String toString() { return "cells-first"; }
+	};
+
+	/** The built-in heuristics */
+	DLXColumnHeuristic[] BUILT_IN = {
+		MIN_SIZE, LEFTMOST, FIRST_CELL, FEWEST_NEIGHBOURS, CELLS_FIRST
+	};
+
+}
@@ -0,0 +1,349 @@
+package dlx;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DLX Component Counter
+ *
+ * Counts the exact covers of the current links by splitting the uncovered
+ * board cells into connected components. When the board is cut into
+ * several components, by walls of the input board or by the rows placed so
+ * far, the search of DLXBasicSearch tries the cross product of their
+ * tilings. Here the smallest component is tiled on its own, with any of
+ * the unused tiles, and for each tiling the rest of the board is counted
+ * once per set of tiles used, so
+ *
+ *   count = sum over tilings T of the component: count(rest, tiles - T)
+ *
+ * where count(rest, ...) is memoized by the tile set. The rest may split
+ * again, and a component which cannot be tiled ends its branch at once.
+ *
+ * The counts of the states visited are kept in a DLXTranspositionTable,
+ * keyed by the hash of the covered columns, so a state reached again by
+ * another order of placements, inside or across components, is counted
+ * once.
+ *
+ * Symmetric solutions are eliminated by counting from the first level rows
+ * of the leader tile only. Searches which compare solution views, and
+ * puzzles whose duplicated tiles are eliminated (the duplicates would be
+ * counted as different tiles), are left to DLXBasicSearch.
+ *
+ * @author Deyuan Guo, Dawei Fan
+ */
+public class DLXComponentCounter {
+
+	/******************** Private Member Variables ********************/
+
+	/** Reference of class DLXConfig */
+	private DLXConfig Config = null;
+
+	/** The links */
+	private DLXBasicLinksArray DLA = null;
+
+	/** The state of the search, for the node count and cancellation */
+	private DLXSearchState State = null;
+
+	/** Counts of visited states, null if disabled */
+	private DLXTranspositionTable Table = null;
+
+	private int numTiles = 0;
+	private int numCells = 0;
+
+	/** The board neighbours of each cell */
+	private int[][] nbr = null;
+
+	/** The area of each tile */
+	private int[] tileArea = null;
+
+	/** Uncovered cells: activeStamp equals scan, set by scanCells() */
+	private int[] activeStamp = null;
+	private int scan = 0;
+	private int stamp = 0;
+
+	/** The component marks of the cells, and the fill stack */
+	private int[] compStamp = null;
+	private int[] stack = null;
+
+	/** The tiles used so far, one bit per tile */
+	private long used = 0;
+
+	/** Component splits seen and rest counts reused from the memo */
+	private long splits = 0;
+	private long memoHits = 0;
+
+	/******************** Public Member Functions ********************/
+
+	/**
+	 * Constructor of DLXComponentCounter
+	 * @param dla
+	 * @param config - the board is taken from here
+	 * @param state
+	 * @param stats
+	 */
+	public DLXComponentCounter(DLXBasicLinksArray dla, DLXConfig config,
+			DLXSearchState state, DLXSearchStats stats) {
+		DLA = dla;
+		Config = config;
+		State = state;
+		if (config.getTranspositionTableSize() > 0) {
+			Table = new DLXTranspositionTable(
+					config.getTranspositionTableSize(), stats);
+		}
+		numTiles = dla.numTiles;
+		numCells = dla.numCells;
+		nbr = dla.cellNeighbours();
+		tileArea = new int[numTiles];
+		for (int r = 0; r < dla.numRows; r++) {
+			tileArea[dla.rowTile(r)] = dla.rowCells(r).length;
+		}
+		activeStamp = new int[numCells];
+		compStamp = new int[numCells];
+		stack = new int[numCells];
+	}
+
+	/**
+	 * Determine if the solutions of a configuration can be counted here.
+	 * @param config
+	 * @param numTiles
+	 * @return
+	 */
+	public static boolean supports(DLXConfig config, int numTiles) {
+		if (config.board == null || numTiles > 63) return false;
+		if (config.eliminateDuplica()) {
+			int[] duplica = config.duplica();
+			for (int t = 0; t < numTiles; t++) {
+				if (duplica[t] != t) return false;
+			}
+		}
+		if (!config.eliminateSymmetry() || config.board.sfpattern.size() == 8)
+			return true;
+		/* Symmetry is eliminated by the leader tile */
+		return !config.isEnableExtra() && config.getLeaderId() >= 0;
+	}
+
+	/**
+	 * Count the solutions.
+	 * @param first - the first level rows, null to count all exact covers
+	 * @return
+	 */
+	public long count(List<DLXCell> first) {
+		long n = 0;
+		if (first == null) {
+			n = countCovers();
+		} else {
+			for (DLXCell x: first) {
+				State.countNode();
+				coverRow(x);
+				n += countCovers();
+				uncoverRow(x);
+			}
+		}
+		if (Config.verb) {
+			System.out.println("Component splits = " + splits
+					+ ", memo hits = " + memoHits);
+		}
+		return n;
+	}
+
+	/******************** Private Member Functions ********************/
+
+	/**
+	 * Count the exact covers of the uncovered cells by the unused tiles,
+	 * looked up in and stored to the transposition table.
+	 * @return
+	 */
+	private long countCovers() {
+		if (Table == null) return countState();
+		long key = DLA.hash;
+		long n = Table.get(key);
+		if (n >= 0) return n;
+		long nodes = State.nodes();
+		n = countState();
+		if (!State.cancelled()) Table.put(key, n, State.nodes() - nodes);
+		return n;
+	}
+
+	/**
+	 * Count the exact covers of the uncovered cells by the unused tiles.
+	 * @return
+	 */
+	private long countState() {
+		if (State.cancelled()) return 0;
+		int cells = scanCells();
+		if (cells == 0) return 1;
+		if (!Config.isEnableExtra() && cells != unusedArea()) return 0;
+
+		/* Find the smallest component; every component must be a multiple
+		 * of the gcd of the unused tile areas */
+		int g = Config.isEnableExtra() ? 1 : unusedGcd();
+		int tag = ++stamp;
+		int best = -1, bestSize = Integer.MAX_VALUE, parts = 0;
+		for (DLXColumnHeader h = DLA.H.R; h != DLA.H; h = h.R) {
+			if (h.col < numTiles) continue;
+			int c = h.col - numTiles;
+			if (compStamp[c] == tag) continue;
+			int size = fill(c, tag);
+			if (size % g != 0) return 0;
+			parts++;
+			if (size < bestSize) {
+				best = c;
+				bestSize = size;
+			}
+		}
+
+		if (parts == 1) return branch();
+
+		/* Tile the smallest component, count the rest once per tile set */
+		splits++;
+		int tag2 = ++stamp;
+		fill(best, tag2);
+		Map<Long, Long> memo = new HashMap<Long, Long>();
+		return tileComponent(tag2, memo);
+	}
+
+	/**
+	 * Branch on the column with the fewest rows.
+	 * @return
+	 */
+	private long branch() {
+		DLXColumnHeader c = null;
+		int s = Integer.MAX_VALUE;
+		for (DLXColumnHeader h = DLA.H.R; h != DLA.H; h = h.R) {
+			if (Config.isEnableExtra() && h.col < numTiles) continue;
+			if (h.S < s) {
+				c = h;
+				s = h.S;
+			}
+		}
+		long n = 0;
+		for (DLXCell x = c.D; x != c; x = x.D) {
+			State.countNode();
+			coverRow(x);
+			n += countCovers();
+			uncoverRow(x);
+		}
+		return n;
+	}
+
+	/**
+	 * Enumerate the tilings of the component marked with tag, and count
+	 * the rest of the board for each.
+	 * @param tag
+	 * @param memo - rest counts by the tiles used
+	 * @return
+	 */
+	private long tileComponent(int tag, Map<Long, Long> memo) {
+		DLXColumnHeader c = null;
+		int s = Integer.MAX_VALUE;
+		for (DLXColumnHeader h = DLA.H.R; h != DLA.H; h = h.R) {
+			if (h.col < numTiles || compStamp[h.col - numTiles] != tag) continue;
+			if (h.S < s) {
+				c = h;
+				s = h.S;
+			}
+		}
+		if (c == null) {
+			/* The component is tiled */
+			Long rest = memo.get(used);
+			if (rest != null) {
+				memoHits++;
+				return rest;
+			}
+			long n = countCovers();
+			memo.put(used, n);
+			return n;
+		}
+
+		long n = 0;
+		for (DLXCell x = c.D; x != c; x = x.D) {
+			State.countNode();
+			coverRow(x);
+			n += tileComponent(tag, memo);
+			uncoverRow(x);
+		}
+		return n;
+	}
+
+	/**
+	 * Mark the uncovered cells.
+	 * @return the number of uncovered cells
+	 */
+	private int scanCells() {
+		int n = 0;
+		scan = ++stamp;
+		for (DLXColumnHeader h = DLA.H.R; h != DLA.H; h = h.R) {
+			if (h.col >= numTiles) {
+				activeStamp[h.col - numTiles] = scan;
+				n++;
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * Mark the component of uncovered cells containing c. Uses the cells
+	 * found by the last scanCells().
+	 * @param c
+	 * @param tag
+	 * @return the size of the component
+	 */
+	private int fill(int c, int tag) {
+		int top = 0, size = 0;
+		compStamp[c] = tag;
+		stack[top++] = c;
+		while (top > 0) {
+			int p = stack[--top];
+			size++;
+			for (int q: nbr[p]) {
+				if (activeStamp[q] != scan || compStamp[q] == tag) continue;
+				compStamp[q] = tag;
+				stack[top++] = q;
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Return the total area of the unused tiles.
+	 * @return
+	 */
+	private int unusedArea() {
+		int a = 0;
+		for (int t = 0; t < numTiles; t++) {
+			if ((used & (1L << t)) == 0) a += tileArea[t];
+		}
+		return a;
+	}
+
+	/**
+	 * Return the gcd of the areas of the unused tiles.
+	 * @return
+	 */
+	private int unusedGcd() {
+		int g = 0;
+		for (int t = 0; t < numTiles && g != 1; t++) {
+			if ((used & (1L << t)) != 0) continue;
+			for (int a = tileArea[t]; a != 0; ) {
+				int r = g % a;
+				g = a;
+				a = r;
+			}
+		}
+		return g == 0 ? 1 : g;
+	}
+
+	private void coverRow(DLXCell x) {
+		DLA.cover(x.C);
+		for (DLXCell i = x.R; i != x; i = i.R) DLA.cover(i.C);
+		used |= 1L << x.tid;
+	}
+
+	private void uncoverRow(DLXCell x) {
+		used &= ~(1L << x.tid);
+		for (DLXCell i = x.L; i != x; i = i.L) DLA.uncover(i.C);
+		DLA.uncover(x.C);
+	}
+
+}
@@ -1,5 +1,7 @@
 package dlx;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import util.Tile;
@@ -7,6 +9,10 @@ import util.Tile;
 
 /**
  * DLX Algorithm Configuration
+ *
+ * Options and per-instance facts of one DLX instance. The mutable state of a
+ * running search is kept in DLXSearchState.
+ *
  * @author Deyuan Guo, Dawei Fan
  */
 public class DLXConfig {
@@ -37,15 +43,7 @@ public class DLXConfig {
 	/** Directly Fail */
 	private boolean tileAreaNotEnough = false;
 	private boolean hasUnreachablePosition = false;
-
-	/** Search Finished */
-	private boolean searchFinished = false;
-
-	/** Single step search */
-	private boolean singleStepSearch = false;
-
-	/** Single step search */
-	private boolean singleSolutionSearch = false;
+	private boolean hasColoringImbalance = false;
 
 	/** Eliminate symmetry solution */
 	private boolean eliminateSymmetry = true;
@@ -55,31 +53,84 @@ public class DLXConfig {
 	 */
 	private boolean eliminateDuplica = true;
 
+	/** Allow autoSetEliminateDuplica to eliminate duplica. When false,
+	 *  solutions which only differ in identical tiles are all kept.
+	 */
+	private boolean enableEliminateDuplica = true;
+
 	/** Tile duplication recodes */
 	private int[] duplica = null;
 	private int[] duplicaS = null;
 	private int[] duplicaSF = null;
 
+	/** Apply the rows of columns with a single row without branching */
+	private boolean enablePropagation = true;
+
+	/** Drop candidate rows whose cover would empty another column */
+	private boolean enableLookahead = false;
+
+	/** Fail placements which cut off a region no tiles can fill */
+	private boolean enableRegionPruning = true;
+
+	/** The largest region checked against the dead pattern table: -1 for
+	 *  twice the largest tile area, 0 for no table. Off by default, building
+	 *  the table takes longer than it saves on the test cases. */
+	private int deadPatternSize = 0;
+
+	/** Count solutions by splitting the board into its components */
+	private boolean enableComponents = true;
+
+	/** Memory limit in megabytes of the transposition table of the
+	 *  component counter, 0 for no table */
+	private int transpositionTableSize = 32;
+
+	/** Count solutions of narrow boards by DLXProfileCounter */
+	private boolean enableProfile = true;
+
+	/** Memory limit in megabytes of the states of the profile counter; a
+	 *  board which needs more is counted by the other counters */
+	private int profileMemory = 64;
+
+	/** The widest occupancy window, in cells, of the profile counter. The
+	 *  8x8 boards (window 31) are counted faster by the component counter. */
+	private int profileWindow = 28;
+
+	/** Count with the profile counter from both ends of the board towards
+	 *  a cut on two threads */
+	private boolean enableProfileCut = false;
+
+	/** Check the coloring invariants before and during the search */
+	private boolean enableColoring = true;
+
+	/** The colorings checked by DLXInvariants */
+	private List<DLXInvariants.Coloring> colorings =
+			new ArrayList<DLXInvariants.Coloring>(Arrays.asList(
+					DLXInvariants.CHECKER, DLXInvariants.ROWS,
+					DLXInvariants.COLUMNS));
+
+	/** Chooses the column to branch on */
+	private DLXColumnHeuristic columnHeuristic = DLXColumnHeuristic.MIN_SIZE;
+
+	/** Orders the rows of the chosen column */
+	private DLXValueOrder valueOrder = DLXValueOrder.NATURAL;
+
 	/** The ID of the leader tile. -1 for no leader. */
 	private int leaderId = -1;
 
-	/** True if use leader tile to eliminate symmetry */
-	private boolean symmetryEliminatedByLeader = false;
-
 	/******************** Public Member Functions ********************/
 
 	public DLXConfig() {
 	}
 
 	/**
-	 * Reset the configuration before every new process.
+	 * Use a shared puzzle: board, tiles and duplica rings.
+	 * @param p
 	 */
-	public void reset(){
-		/* Reset all search related configuration. */
-		searchFinished = false;
-		singleStepSearch = false;
-		singleSolutionSearch = false;
-		symmetryEliminatedByLeader = false;
+	public void setPuzzle(DLXPuzzle p) {
+		board = p.board();
+		tiles = p.tiles();
+		int[][] rings = p.getDuplicaRings();
+		setDuplicaRings(rings[0], rings[1], rings[2]);
 	}
 
 	public boolean isEnableSpin() { return enableSpin; }
@@ -88,38 +139,121 @@ public class DLXConfig {
 	public boolean isEnableSpinFlip() { return enableSpinFlip; }
 	public void setEnableSpinFlip(boolean b) { enableSpinFlip = b; }
 
+	/**
+	 * Return the largest orientation class of the rows allowed by the spin
+	 * and flip options, see DLXBasicExactCoverArray.ORIENT_FIXED/SPIN/FLIP.
+	 * @return
+	 */
+	public int orientationMask() {
+		if (enableSpinFlip) return DLXBasicExactCoverArray.ORIENT_FLIP;
+		if (enableSpin) return DLXBasicExactCoverArray.ORIENT_SPIN;
+		return DLXBasicExactCoverArray.ORIENT_FIXED;
+	}
+
 	public boolean isEnableExtra() { return enableExtra; }
 	public void setEnableExtra(boolean b) { enableExtra = b; }
 
 	public boolean isDirectlyFail() {
-		return tileAreaNotEnough || hasUnreachablePosition;
+		return tileAreaNotEnough || hasUnreachablePosition
+				|| hasColoringImbalance;
 	}
 	public void setTileAreaNotEnough(boolean b) { tileAreaNotEnough = b; }
 	public void setHasUnreachablePosition(boolean b) { hasUnreachablePosition = b; }
 	public boolean tileAreaNotEnough() { return tileAreaNotEnough; }
 	public boolean hasUnreachablePosition() { return hasUnreachablePosition; }
+	public void setHasColoringImbalance(boolean b) { hasColoringImbalance = b; }
+	public boolean hasColoringImbalance() { return hasColoringImbalance; }
 
-	public boolean searchFinished() { return searchFinished; }
-	public void setSearchFinished(boolean b) { searchFinished = b; }
+	public boolean eliminateSymmetry() { return eliminateSymmetry; }
+	public void setEliminateSymmetry(boolean b) { eliminateSymmetry = b; }
 
-	public boolean singleStepSearch() { return singleStepSearch; }
-	public void setSingleStepSearch(boolean b) { singleStepSearch = b; }
+	public boolean isEnablePropagation() { return enablePropagation; }
+	public void setEnablePropagation(boolean b) { enablePropagation = b; }
 
-	public boolean singleSolutionSearch() { return singleSolutionSearch; }
-	public void setSingleSolutionSearch(boolean b) { singleSolutionSearch = b; }
+	public boolean isEnableLookahead() { return enableLookahead; }
+	public void setEnableLookahead(boolean b) { enableLookahead = b; }
 
-	public boolean eliminateSymmetry() { return eliminateSymmetry; }
-	public void setEliminateSymmetry(boolean b) { eliminateSymmetry = b; }
+	public boolean isEnableRegionPruning() { return enableRegionPruning; }
+	public void setEnableRegionPruning(boolean b) { enableRegionPruning = b; }
+
+	public int getDeadPatternSize() { return deadPatternSize; }
+	public void setDeadPatternSize(int n) { deadPatternSize = n; }
+
+	public boolean isEnableComponents() { return enableComponents; }
+	public void setEnableComponents(boolean b) { enableComponents = b; }
+
+	public int getTranspositionTableSize() { return transpositionTableSize; }
+	public void setTranspositionTableSize(int mb) { transpositionTableSize = mb; }
+
+	public boolean isEnableProfile() { return enableProfile; }
+	public void setEnableProfile(boolean b) { enableProfile = b; }
+
+	public int getProfileMemory() { return profileMemory; }
+	public void setProfileMemory(int mb) { profileMemory = mb; }
+
+	public int getProfileWindow() { return profileWindow; }
+	public void setProfileWindow(int n) { profileWindow = n; }
+
+	public boolean isEnableProfileCut() { return enableProfileCut; }
+	public void setEnableProfileCut(boolean b) { enableProfileCut = b; }
+
+	public boolean isEnableColoring() { return enableColoring; }
+	public void setEnableColoring(boolean b) { enableColoring = b; }
+
+	/**
+	 * Return the colorings checked by DLXInvariants. The list may be
+	 * changed before preProcess.
+	 * @return
+	 */
+	public List<DLXInvariants.Coloring> getColorings() { return colorings; }
+
+	public DLXColumnHeuristic getColumnHeuristic() { return columnHeuristic; }
+	public void setColumnHeuristic(DLXColumnHeuristic h) { columnHeuristic = h; }
+
+	/**
+	 * Select a built-in column heuristic by name, see
+	 * DLXColumnHeuristic.BUILT_IN.
+	 * @param name
+	 */
+	public void setColumnHeuristic(String name) {
+		for (DLXColumnHeuristic h: DLXColumnHeuristic.BUILT_IN) {
+			if (h.toString().equals(name)) {
+				columnHeuristic = h;
+				return;
+			}
+		}
+		throw new IllegalArgumentException("Unknown column heuristic " + name);
+	}
+
+	public DLXValueOrder getValueOrder() { return valueOrder; }
+	public void setValueOrder(DLXValueOrder o) { valueOrder = o; }
+
+	/**
+	 * Select a built-in value order by name, see DLXValueOrder.BUILT_IN.
+	 * @param name
+	 */
+	public void setValueOrder(String name) {
+		for (DLXValueOrder o: DLXValueOrder.BUILT_IN) {
+			if (o.toString().equals(name)) {
+				valueOrder = o;
+				return;
+			}
+		}
+		throw new IllegalArgumentException("Unknown value order " + name);
+	}
 
 	public int getLeaderId() { return leaderId; }
 	public void setLeaderId(int id) { leaderId = id; }
 
-	public boolean symmetryEliminatedByLeader() { return symmetryEliminatedByLeader; }
-	public void setSymmetryEiminatedByLeader(boolean b) { symmetryEliminatedByLeader = b; }
-
 	public boolean eliminateDuplica() { return eliminateDuplica; }
 	public void setEliminateDuplica(boolean b) { eliminateDuplica = b; }
+	public boolean isEnableEliminateDuplica() { return enableEliminateDuplica; }
+	public void setEnableEliminateDuplica(boolean b) { enableEliminateDuplica = b; }
 	public void autoSetEliminateDuplica() {
+		if (!enableEliminateDuplica) {
+			eliminateDuplica = false;
+			return;
+		}
 		for (int i = 0; i < duplica.length; i++) {
 			if ((duplica[i] != i) ||
 					(duplicaS[i] != i && enableSpin) ||
@@ -141,6 +275,27 @@ public class DLXConfig {
 		return duplica;
 	}
 
+	/**
+	 * Return the duplica rings for no spin, spin and spin/flip.
+	 * @return
+	 */
+	public int[][] getDuplicaRings() {
+		return new int[][] {duplica, duplicaS, duplicaSF};
+	}
+
+	/**
+	 * Set the duplica rings directly, e.g. from a DLXCache entry, instead of
+	 * recognizing them from the tile list.
+	 * @param d - rings without spin
+	 * @param s - rings with spin
+	 * @param sf - rings with spin and flip
+	 */
+	public void setDuplicaRings(int[] d, int[] s, int[] sf) {
+		duplica = d;
+		duplicaS = s;
+		duplicaSF = sf;
+	}
+
 	public void print() {
 		System.out.println("DLXConfig Class:");
 		System.out.println("Spin = " + enableSpin);
@@ -148,11 +303,20 @@ public class DLXConfig {
 		System.out.println("Extra = " + enableExtra);
 		System.out.println("Eliminate symmetry = " + eliminateSymmetry);
 		System.out.println("Eliminate duplica = " + eliminateDuplica);
+		System.out.println("Propagation = " + enablePropagation);
+		System.out.println("Lookahead = " + enableLookahead);
+		System.out.println("Region pruning = " + enableRegionPruning);
+		System.out.println("Dead pattern size = " + deadPatternSize);
+		System.out.println("Components = " + enableComponents);
+		System.out.println("Transposition table = " + transpositionTableSize + " MB");
+		System.out.println("Column heuristic = " + columnHeuristic);
+		System.out.println("Value order = " + valueOrder);
+		System.out.println("Profile = " + enableProfile + ", " + profileMemory
+				+ " MB, window " + profileWindow + ", cut " + enableProfileCut);
+		System.out.println("Coloring = " + enableColoring + " " + colorings);
 		System.out.println("Tile area not enough = " + tileAreaNotEnough);
 		System.out.println("Has unreachable position = " + hasUnreachablePosition);
-		System.out.println("Search finished = " + searchFinished);
-		System.out.println("Single step search = " + singleStepSearch);
-		System.out.println("Single solution search = " + singleSolutionSearch);
+		System.out.println("Has coloring imbalance = " + hasColoringImbalance);
 		System.out.println();
 	}
 
@@ -0,0 +1,398 @@
+package dlx;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * DLX Coloring Invariants
+ *
+ * A coloring gives every board cell a weight, e.g. +1 on black and -1 on
+ * white cells of a checkerboard. A placed tile covers a weight sum (its
+ * imbalance) which depends on its orientation and position; the rows of the
+ * links give the possible imbalances of each tile. The uncovered cells must
+ * be covered by one row of each unused tile, so their weight sum must be a
+ * sum of one possible imbalance per unused tile (or none, for extra tiles).
+ *
+ * The check runs once in prepare() on the whole board, where a failure
+ * makes the puzzle fail directly (DLXConfig.hasColoringImbalance()), and
+ * after every placement on the uncovered cells. place/remove keep the
+ * weight sums of the uncovered cells and the smallest and largest sum of
+ * the unused tiles up to date, so a sum out of that range fails at once.
+ * Otherwise the reachable sums are a bitset built with one shift per tile
+ * and imbalance; the bitsets depend only on the set of unused tiles, and
+ * they are cached by that set for up to 64 tiles.
+ *
+ * Colorings are pluggable: DLXConfig.getColorings() holds the colorings
+ * used, by default CHECKER, ROWS and COLUMNS.
+ *
+ * @author Deyuan Guo, Dawei Fan
+ */
+public class DLXInvariants {
+
+	/******************** Public Member Variables ********************/
+
+	/**
+	 * A coloring of the board.
+	 */
+	public interface Coloring {
+		/** The weight of the cell at row r and column c of the board */
+		int weight(int r, int c);
+	}
+
+	/** Checkerboard: +1 on (r + c) even, -1 on (r + c) odd */
+	public static final Coloring CHECKER = new Coloring() {
+		@Override
+		public int weight(int r, int c) { return ((r + c) & 1) == 0 ? 1 : -1; }
+		@Override
+		public String toString() { return "checker"; }
+	};
+
+	/** Row stripes: +1 on even rows, -1 on odd rows */
+	public static final Coloring ROWS = new Coloring() {
+		@Override
+		public int weight(int r, int c) { return (r & 1) == 0 ? 1 : -1; }
+		@Override
+		public String toString() { return "rows"; }
+	};
+
+	/** Column stripes: +1 on even columns, -1 on odd columns */
+	public static final Coloring COLUMNS = new Coloring() {
+		@Override
+		public int weight(int r, int c) { return (c & 1) == 0 ? 1 : -1; }
+		@Override
+		public String toString() { return "columns"; }
+	};
+
+	/******************** Private Member Variables ********************/
+
+	/** The most cached sets of unused tiles; the cache is cleared when full */
+	private static final int CACHE_LIMIT = 1 << 16;
+
+	/** Reference of class DLXConfig */
+	private DLXConfig Config = null;
+
+	/** The links, for the rows of each tile */
+	private DLXBasicLinksArray DLA = null;
+
+	/** Counters */
+	private DLXSearchStats Stats = null;
+
+	private int numTiles = 0;
+	private int numCells = 0;
+
+	/** Board position of each cell */
+	private int[] cellR = null;
+	private int[] cellC = null;
+
+	/** The colorings in use: weight of each cell, the possible imbalances
+	 *  of each tile, and the weight sum of the uncovered cells */
+	private int numColorings = 0;
+	private int[][] weight = null;
+	private int[][][] imbalance = null;
+	private int[] left = null;
+
+	/** The smallest and largest imbalance of each tile, and their sums over
+	 *  the unused tiles */
+	private int[][] tileLo = null;
+	private int[][] tileHi = null;
+	private int[] lo = null;
+	private int[] hi = null;
+
+	/** Unused tiles and uncovered cells */
+	private boolean[] tileUsed = null;
+	private boolean[] covered = null;
+
+	/** The total area of the tiles */
+	private int tileArea = 0;
+
+	/** Sums are kept with this offset, the largest possible |sum| */
+	private int offset = 0;
+	private long[] reach = null;
+	private long[] next = null;
+
+	/** The reachable sums of each coloring by the set of unused tiles, a
+	 *  bit per tile; null for more than 64 tiles */
+	private HashMap<Long, long[][]> cache = null;
+	private long unused = 0;
+
+	private int preparedMask = -1;
+
+	/******************** Public Member Functions ********************/
+
+	/**
+	 * Constructor of DLXInvariants
+	 * @param dla
+	 * @param config - the board is taken from here
+	 * @param stats
+	 */
+	public DLXInvariants(DLXBasicLinksArray dla, DLXConfig config,
+			DLXSearchStats stats) {
+		DLA = dla;
+		Config = config;
+		Stats = stats;
+		numTiles = dla.numTiles;
+		numCells = dla.numCells;
+		tileUsed = new boolean[numTiles];
+		covered = new boolean[numCells];
+		if (numTiles <= 64) {
+			cache = new HashMap<Long, long[][]>();
+			unused = numTiles == 64 ? -1L : (1L << numTiles) - 1;
+		}
+
+		cellR = dla.cellRows();
+		cellC = dla.cellColumns();
+		int[] area = new int[numTiles];
+		for (int r = 0; r < dla.numRows; r++) {
+			area[dla.rowTile(r)] = dla.rowCells(r).length;
+		}
+		for (int t = 0; t < numTiles; t++) tileArea += area[t];
+	}
+
+	/**
+	 * Collect the imbalances of the tiles for the configured colorings and
+	 * orientations, and check the whole board. Called by preProcess; the
+	 * search calls it again if the orientations change.
+	 */
+	public void prepare() {
+		collect();
+		List<Coloring> colorings = Config.getColorings();
+		Config.setHasColoringImbalance(false);
+		for (int k = 0; k < numColorings; k++) {
+			if (!reachable(k, null)) {
+				Config.setHasColoringImbalance(true);
+				if (Config.verb)
+					System.out.println("Directly fail (coloring imbalance: "
+							+ colorings.get(k) + ").");
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Follow the cover of a row.
+	 * @param x - any cell of the row
+	 */
+	public void place(DLXCell x) {
+		DLXCell k = x;
+		do {
+			if (k.col < numTiles) useTile(k.col, true);
+			else {
+				int i = k.col - numTiles;
+				covered[i] = true;
+				for (int j = 0; j < numColorings; j++) left[j] -= weight[j][i];
+			}
+			k = k.R;
+		} while (k != x);
+	}
+
+	/**
+	 * Follow the uncover of a row.
+	 * @param x - any cell of the row
+	 */
+	public void remove(DLXCell x) {
+		DLXCell k = x;
+		do {
+			if (k.col < numTiles) useTile(k.col, false);
+			else {
+				int i = k.col - numTiles;
+				covered[i] = false;
+				for (int j = 0; j < numColorings; j++) left[j] += weight[j][i];
+			}
+			k = k.R;
+		} while (k != x);
+	}
+
+	/**
+	 * Determine if the uncovered cells cannot be covered by the unused
+	 * tiles under some coloring.
+	 * @return
+	 */
+	public boolean isDead() {
+		if (preparedMask != Config.orientationMask()) collect();
+		Stats.coloringChecks++;
+		for (int k = 0; k < numColorings; k++) {
+			if (left[k] < lo[k] || left[k] > hi[k]) {
+				Stats.coloringPruned++;
+				return true;
+			}
+		}
+		long[][] sums = null;
+		if (cache != null) {
+			sums = cache.get(unused);
+			if (sums == null) {
+				if (cache.size() >= CACHE_LIMIT) cache.clear();
+				sums = new long[numColorings][];
+				for (int k = 0; k < numColorings; k++) sums[k] = sums(k);
+				cache.put(unused, sums);
+			}
+		}
+		for (int k = 0; k < numColorings; k++) {
+			if (!reachable(k, sums == null ? null : sums[k])) {
+				Stats.coloringPruned++;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/******************** Private Member Functions ********************/
+
+	/**
+	 * Collect the weights of the cells and the imbalances of the tiles for
+	 * the configured colorings and orientations.
+	 */
+	private void collect() {
+		preparedMask = Config.orientationMask();
+		List<Coloring> colorings = Config.getColorings();
+		numColorings = colorings.size();
+		weight = new int[numColorings][numCells];
+		imbalance = new int[numColorings][][];
+		left = new int[numColorings];
+		int maxWeight = 0;
+		for (int k = 0; k < numColorings; k++) {
+			for (int i = 0; i < numCells; i++) {
+				weight[k][i] = colorings.get(k).weight(cellR[i], cellC[i]);
+				maxWeight = Math.max(maxWeight, Math.abs(weight[k][i]));
+				if (!covered[i]) left[k] += weight[k][i];
+			}
+		}
+		offset = maxWeight * Math.max(tileArea, numCells);
+		reach = new long[((2 * offset) >> 6) + 1];
+		next = new long[reach.length];
+		boolean extra = Config.isEnableExtra();
+		tileLo = new int[numColorings][numTiles];
+		tileHi = new int[numColorings][numTiles];
+		lo = new int[numColorings];
+		hi = new int[numColorings];
+		for (int k = 0; k < numColorings; k++) {
+			imbalance[k] = imbalances(weight[k]);
+			for (int t = 0; t < numTiles; t++) {
+				int[] v = imbalance[k][t];
+				int l = v.length > 0 ? v[0] : 0;
+				int h = v.length > 0 ? v[v.length - 1] : 0;
+				/* An extra tile may stay unused, which adds 0 */
+				if (extra) {
+					l = Math.min(l, 0);
+					h = Math.max(h, 0);
+				}
+				tileLo[k][t] = l;
+				tileHi[k][t] = h;
+				if (!tileUsed[t]) {
+					lo[k] += l;
+					hi[k] += h;
+				}
+			}
+		}
+		if (cache != null) cache.clear();
+	}
+
+	/**
+	 * Follow the use of a tile in the bounds and the unused tile set.
+	 * @param t
+	 * @param used
+	 */
+	private void useTile(int t, boolean used) {
+		tileUsed[t] = used;
+		if (cache != null) unused ^= 1L << t;
+		int sign = used ? -1 : 1;
+		for (int k = 0; k < numColorings; k++) {
+			lo[k] += sign * tileLo[k][t];
+			hi[k] += sign * tileHi[k][t];
+		}
+	}
+
+	/**
+	 * Determine if the weight sum of the uncovered cells is a sum of one
+	 * imbalance of each unused tile.
+	 * @param k - the coloring
+	 * @param sums - the reachable sums of the unused tiles, null to build
+	 * them here
+	 * @return
+	 */
+	private boolean reachable(int k, long[] sums) {
+		int target = left[k] + offset;
+		if (target < 0 || target > 2 * offset) return false;
+		if (sums == null) sums = sums(k);
+		return (sums[target >> 6] & (1L << (target & 63))) != 0;
+	}
+
+	/**
+	 * Return the bitset of the sums of one imbalance of each unused tile,
+	 * with bit s + offset for sum s.
+	 * @param k - the coloring
+	 * @return a new array
+	 */
+	private long[] sums(int k) {
+		boolean extra = Config.isEnableExtra();
+		Arrays.fill(reach, 0);
+		reach[offset >> 6] = 1L << (offset & 63);
+		for (int t = 0; t < numTiles; t++) {
+			if (tileUsed[t]) continue;
+			int[] v = imbalance[k][t];
+			if (extra) System.arraycopy(reach, 0, next, 0, reach.length);
+			else Arrays.fill(next, 0);
+			for (int d: v) shiftOr(d);
+			long[] s = reach;
+			reach = next;
+			next = s;
+		}
+		return reach.clone();
+	}
+
+	/**
+	 * next |= reach shifted by d bits.
+	 * @param d
+	 */
+	private void shiftOr(int d) {
+		int n = reach.length;
+		if (d >= 0) {
+			int w = d >> 6, b = d & 63;
+			for (int i = n - 1; i >= w; i--) {
+				long x = reach[i - w] << b;
+				if (b > 0 && i - w - 1 >= 0) x |= reach[i - w - 1] >>> (64 - b);
+				next[i] |= x;
+			}
+		} else {
+			d = -d;
+			int w = d >> 6, b = d & 63;
+			for (int i = 0; i + w < n; i++) {
+				long x = reach[i + w] >>> b;
+				if (b > 0 && i + w + 1 < n) x |= reach[i + w + 1] << (64 - b);
+				next[i] |= x;
+			}
+		}
+	}
+
+	/**
+	 * Return the distinct imbalances of each tile over its rows which are
+	 * linked under the current orientation mask.
+	 * @param w - the weight of each cell
+	 * @return
+	 */
+	private int[][] imbalances(int[] w) {
+		int mask = Config.orientationMask();
+		boolean[][] seen = new boolean[numTiles][2 * offset + 1];
+		int[] count = new int[numTiles];
+		for (int r = 0; r < DLA.numRows; r++) {
+			if (DLA.orientation(r) > mask) continue;
+			int t = DLA.rowTile(r);
+			int s = 0;
+			for (int i: DLA.rowCells(r)) s += w[i];
+			if (!seen[t][s + offset]) {
+				seen[t][s + offset] = true;
+				count[t]++;
+			}
+		}
+		int[][] v = new int[numTiles][];
+		for (int t = 0; t < numTiles; t++) {
+			v[t] = new int[count[t]];
+			int n = 0;
+			for (int s = 0; s <= 2 * offset; s++) {
+				if (seen[t][s]) v[t][n++] = s - offset;
+			}
+		}
+		return v;
+	}
+
+}
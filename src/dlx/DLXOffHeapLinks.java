@@ -0,0 +1,346 @@
+package dlx;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.List;
+
+import util.Tile;
+
+/**
+ * DLX Off-heap Links
+ *
+ * Dancing links kept in direct memory instead of a graph of DLXCell
+ * objects, for instances whose links do not fit into a reasonable heap. The
+ * garbage collector never scans the nodes, and node indices are longs, so
+ * the number of nodes is only bounded by the direct memory limit
+ * (-XX:MaxDirectMemorySize).
+ *
+ * The layout follows Knuth's sequential dancing links: node 0 is unused,
+ * nodes 1 .. numColumns are the column headers (column c is item c + 1),
+ * and the rows follow one after another, each closed by a spacer node. A
+ * node holds TOP (its item, or -row-1 in a spacer), ULINK and DLINK; the
+ * column sizes are kept on the heap. Left and right neighbours are the adjacent
+ * nodes; a spacer's ULINK is the first node of the row before it and its
+ * DLINK the last node of the row after it. The list of active columns is
+ * small and stays on the heap.
+ *
+ * The rows are appended with addRow(), e.g. streamed from
+ * DLXBasicExactCoverArray, so the exact cover array is never held in
+ * memory either. Searched by DLXOffHeapSearch.
+ *
+ * @author Deyuan Guo, Dawei Fan
+ */
+public class DLXOffHeapLinks implements Closeable {
+
+	/******************** Public Member Variables ********************/
+
+	/** The number of Tiles */
+	public final int numTiles;
+
+	/** The number of board cells */
+	public final int numCells;
+
+	/** The number of Columns */
+	public final int numColumns;
+
+	/******************** Private Member Variables ********************/
+
+	/** Bytes per node: TOP (int, padded), ULINK (long), DLINK (long) */
+	private static final int NODE = 24;
+	private static final int TOP = 0;
+	private static final int ULINK = 8;
+	private static final int DLINK = 16;
+
+	/** Nodes per direct buffer */
+	private static final int CHUNK_BITS = 18;
+	private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+	/** The node memory */
+	private ByteBuffer[] chunks = new ByteBuffer[16];
+	private int numChunks = 0;
+
+	/** The number of nodes, including headers and spacers */
+	private long numNodes = 0;
+
+	/** The number of rows */
+	private int numRows = 0;
+
+	/** The last spacer */
+	private long spacer = 0;
+
+	/** Horizontal list of the active items, item 0 is the root */
+	int[] llink;
+	int[] rlink;
+
+	/** The number of rows of each item, kept on the heap since it changes
+	 *  with every hidden node */
+	int[] len;
+
+	/******************** Public Member Functions ********************/
+
+	/**
+	 * Constructor of DLXOffHeapLinks without rows.
+	 * @param tiles - the number of tiles
+	 * @param cells - the number of board cells
+	 * @param primaryTiles - false if the tile columns are secondary, i.e.
+	 * each tile may be left unused (extra tiles)
+	 */
+	public DLXOffHeapLinks(int tiles, int cells, boolean primaryTiles) {
+		numTiles = tiles;
+		numCells = cells;
+		numColumns = tiles + cells;
+
+		llink = new int[numColumns + 1];
+		rlink = new int[numColumns + 1];
+		len = new int[numColumns + 1];
+		int prev = 0;
+		for (int i = 1; i <= numColumns; i++) {
+			if (!primaryTiles && i <= numTiles) {
+				/* secondary items are never chosen */
+				llink[i] = i;
+				rlink[i] = i;
+				continue;
+			}
+			llink[i] = prev;
+			rlink[prev] = i;
+			prev = i;
+		}
+		rlink[prev] = 0;
+		llink[0] = prev;
+
+		/* root, headers and the first spacer */
+		allocate(numColumns + 2);
+		for (int i = 1; i <= numColumns; i++) {
+			setTop(i, i);
+			setU(i, i);
+			setD(i, i);
+		}
+		spacer = numColumns + 1;
+		setTop(spacer, 0);
+		numNodes = numColumns + 2;
+	}
+
+	/**
+	 * Build the off-heap links of a puzzle for the spin/flip configuration
+	 * of config. The rows are streamed from DLXBasicExactCoverArray.
+	 * @param board
+	 * @param tiles
+	 * @param config
+	 * @return
+	 */
+	public static DLXOffHeapLinks build(Tile board, List<Tile> tiles,
+			DLXConfig config) {
+		/* Find out whether tiles are extra before the rows are generated */
+		int area = 0;
+		for (Tile t: tiles) area += t.area;
+		final DLXOffHeapLinks links = new DLXOffHeapLinks(tiles.size(),
+				board.area, area <= board.area);
+		new DLXBasicExactCoverArray(board, tiles, config, false,
+				new DLXBasicExactCoverArray.RowSink() {
+			@Override
+			public void row(int[] cols, byte orient) {
+				links.addRow(cols);
+			}
+		});
+		return links;
+	}
+
+	/**
+	 * Append a row.
+	 * @param cols - column indices in ascending order
+	 */
+	public void addRow(int[] cols) {
+		if (cols.length == 0) return;
+		allocate(numNodes + cols.length + 1);
+		long first = numNodes;
+		for (int k = 0; k < cols.length; k++) {
+			int item = cols[k] + 1;
+			long p = numNodes++;
+			long u = getU(item);
+			setTop(p, item);
+			setU(p, u);
+			setD(p, item);
+			setD(u, p);
+			setU(item, p);
+			len[item]++;
+		}
+		setD(spacer, numNodes - 1);
+		spacer = numNodes++;
+		setTop(spacer, -(++numRows));
+		setU(spacer, first);
+	}
+
+	public int numRows() { return numRows; }
+	public long numNodes() { return numNodes; }
+
+	/**
+	 * Return the number of bytes of direct memory in use.
+	 * @return
+	 */
+	public long memoryBytes() {
+		long n = 0;
+		for (ByteBuffer b: chunks) if (b != null) n += b.capacity();
+		return n;
+	}
+
+	/**
+	 * Return the number of rows in a column.
+	 * @param col
+	 * @return
+	 */
+	public int columnSize(int col) {
+		return len[col + 1];
+	}
+
+	/**
+	 * Return the row of a node.
+	 * @param p
+	 * @return
+	 */
+	public int rowOf(long p) {
+		while (getTop(p) > 0) p++;
+		return -getTop(p) - 1;
+	}
+
+	/**
+	 * Return the columns of the row of a node, in ascending order.
+	 * @param p
+	 * @return
+	 */
+	public int[] rowColumns(long p) {
+		while (getTop(p) > 0) p++;
+		long first = getU(p);
+		int[] cols = new int[(int) (p - first)];
+		for (int k = 0; k < cols.length; k++) {
+			cols[k] = getTop(first + k) - 1;
+		}
+		return cols;
+	}
+
+	/**
+	 * Release the direct buffers. The memory is returned once the buffers
+	 * are collected.
+	 */
+	@Override
+	public void close() {
+		Arrays.fill(chunks, null);
+		numChunks = 0;
+		numNodes = 0;
+	}
+
+	/******************** Private Member Functions ********************/
+
+	int getTop(long p) {
+		return chunks[(int) (p >>> CHUNK_BITS)].getInt(
+				((int) p & CHUNK_MASK) * NODE + TOP);
+	}
+
+	long getU(long p) {
+		return chunks[(int) (p >>> CHUNK_BITS)].getLong(
+				((int) p & CHUNK_MASK) * NODE + ULINK);
+	}
+
+	long getD(long p) {
+		return chunks[(int) (p >>> CHUNK_BITS)].getLong(
+				((int) p & CHUNK_MASK) * NODE + DLINK);
+	}
+
+	void setTop(long p, int v) {
+		chunks[(int) (p >>> CHUNK_BITS)].putInt(
+				((int) p & CHUNK_MASK) * NODE + TOP, v);
+	}
+
+	void setU(long p, long v) {
+		chunks[(int) (p >>> CHUNK_BITS)].putLong(
+				((int) p & CHUNK_MASK) * NODE + ULINK, v);
+	}
+
+	void setD(long p, long v) {
+		chunks[(int) (p >>> CHUNK_BITS)].putLong(
+				((int) p & CHUNK_MASK) * NODE + DLINK, v);
+	}
+
+	/**
+	 * Cover an item: unlink it from the active list and hide its rows.
+	 * @param i
+	 */
+	void cover(int i) {
+		for (long p = getD(i); p != i; p = getD(p)) hide(p);
+		int l = llink[i], r = rlink[i];
+		rlink[l] = r;
+		llink[r] = l;
+	}
+
+	/**
+	 * Uncover an item in the reverse order of cover().
+	 * @param i
+	 */
+	void uncover(int i) {
+		int l = llink[i], r = rlink[i];
+		rlink[l] = i;
+		llink[r] = i;
+		for (long p = getU(i); p != i; p = getU(p)) unhide(p);
+	}
+
+	/**
+	 * Unlink the other nodes of the row of p from their columns.
+	 * @param p
+	 */
+	private void hide(long p) {
+		long q = p + 1;
+		while (q != p) {
+			ByteBuffer b = chunks[(int) (q >>> CHUNK_BITS)];
+			int o = ((int) q & CHUNK_MASK) * NODE;
+			int x = b.getInt(o + TOP);
+			if (x <= 0) {
+				q = b.getLong(o + ULINK);
+			} else {
+				long u = b.getLong(o + ULINK), d = b.getLong(o + DLINK);
+				setD(u, d);
+				setU(d, u);
+				len[x]--;
+				q++;
+			}
+		}
+	}
+
+	/**
+	 * Link back the other nodes of the row of p, right to left.
+	 * @param p
+	 */
+	private void unhide(long p) {
+		long q = p - 1;
+		while (q != p) {
+			ByteBuffer b = chunks[(int) (q >>> CHUNK_BITS)];
+			int o = ((int) q & CHUNK_MASK) * NODE;
+			int x = b.getInt(o + TOP);
+			if (x <= 0) {
+				q = b.getLong(o + DLINK);
+			} else {
+				long u = b.getLong(o + ULINK), d = b.getLong(o + DLINK);
+				setD(u, q);
+				setU(d, q);
+				len[x]++;
+				q--;
+			}
+		}
+	}
+
+	/**
+	 * Make sure nodes 0 .. n-1 are allocated.
+	 * @param n
+	 */
+	private void allocate(long n) {
+		int need = (int) ((n + CHUNK_MASK) >>> CHUNK_BITS);
+		if (need > chunks.length) {
+			chunks = Arrays.copyOf(chunks, Math.max(need, chunks.length * 2));
+		}
+		while (numChunks < need) {
+			chunks[numChunks++] = ByteBuffer.allocateDirect(
+					(CHUNK_MASK + 1) * NODE).order(ByteOrder.nativeOrder());
+		}
+	}
+
+}
@@ -0,0 +1,405 @@
+package dlx;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DLX Search on Off-heap Links
+ *
+ * The search loop of DLXBasicSearch on DLXOffHeapLinks: rows are tried in
+ * the same order, duplicated tiles are used in order, and the leader tile
+ * eliminates symmetric first level choices, so the solutions and node
+ * counts are the same as on the heap links without forced-move
+ * propagation (see DLXConfig.setEnablePropagation). The search state is one
+ * chosen item and one node index per level, so it pauses after each
+ * solution and resumes on the next call.
+ *
+ * Symmetric solutions which are only recognized by comparing solution
+ * views (see needsSolutionViews()) are not eliminated here.
+ *
+ * @author Deyuan Guo, Dawei Fan
+ */
+public class DLXOffHeapSearch {
+
+	/******************** Private Member Variables ********************/
+
+	/** Steps of the search loop */
+	private static final int ENTER = 0;
+	private static final int TRY = 1;
+	private static final int RETREAT = 2;
+
+	/** Reference of class DLXConfig */
+	private DLXConfig Config = null;
+
+	/** The links */
+	private DLXOffHeapLinks DLA = null;
+
+	/** The state of this search */
+	private DLXSearchState State = null;
+
+	/** Symmetry checks on the board of this search */
+	private DLXSymmetry Symmetry = null;
+
+	/** The chosen item and the current node of each level */
+	private int[] item = null;
+	private long[] x = null;
+	private int level = 0;
+	private int step = ENTER;
+	private boolean started = false;
+
+	/** Non-symmetric first level choices of the leader tile, or null */
+	private long[] first = null;
+	private int firstIdx = 0;
+
+	/** The leader tile, -1 for none */
+	private int leader = -1;
+
+	/** Covered tile items and the number of uncovered board cells */
+	private boolean[] tileCovered = null;
+	private int cellsLeft = 0;
+
+	/******************** Public Member Functions ********************/
+
+	/**
+	 * Constructor of DLXOffHeapSearch
+	 * @param links
+	 * @param config
+	 */
+	public DLXOffHeapSearch(DLXOffHeapLinks links, DLXConfig config) {
+		DLA = links;
+		Config = config;
+		State = new DLXSearchState();
+		Symmetry = new DLXSymmetry(config);
+		item = new int[links.numTiles + 1];
+		x = new long[links.numTiles + 1];
+		tileCovered = new boolean[links.numTiles];
+		cellsLeft = links.numCells;
+		chooseLeaderTile();
+	}
+
+	/**
+	 * Solve until find next solution.
+	 * @return the rows of the solution in trail order, or null if the search
+	 * is finished or cancelled
+	 */
+	public int[] nextSolution() {
+		if (State.searchFinished()) return null;
+		if (!started) {
+			started = true;
+			if (isDirectlyFail()) {
+				State.setSearchFinished(true);
+				return null;
+			}
+		}
+
+		while (true) {
+			if (step == ENTER) {
+				/* All board cells covered */
+				if (cellsLeft == 0) {
+					step = RETREAT;
+					int[] rows = new int[level];
+					for (int k = 0; k < level; k++) rows[k] = DLA.rowOf(x[k]);
+					return rows;
+				}
+				int i = (level == 0) ? chooseFirstItem() : chooseItem();
+				if (i == 0 || DLA.len[i] == 0) {
+					step = RETREAT;
+					continue;
+				}
+				coverItem(i);
+				item[level] = i;
+				x[level] = (level == 0) ? firstChoice(i) : DLA.getD(i);
+				step = TRY;
+			} else if (step == TRY) {
+				if (State.cancelled()) {
+					State.setSearchFinished(true);
+					return null;
+				}
+				long p = x[level];
+				if (p == item[level]) {
+					uncoverItem(item[level]);
+					step = RETREAT;
+					continue;
+				}
+				if (!duplicatedTileInOrder(p)) {
+					x[level] = nextChoice(p);
+					continue;
+				}
+				State.countNode();
+				for (long q = p + 1; q != p; ) {
+					int j = DLA.getTop(q);
+					if (j <= 0) {
+						q = DLA.getU(q);
+					} else {
+						coverItem(j);
+						q++;
+					}
+				}
+				level++;
+				step = ENTER;
+			} else {
+				if (level == 0) {
+					State.setSearchFinished(true);
+					return null;
+				}
+				level--;
+				long p = x[level];
+				for (long q = p - 1; q != p; ) {
+					int j = DLA.getTop(q);
+					if (j <= 0) {
+						q = DLA.getD(q);
+					} else {
+						uncoverItem(j);
+						q--;
+					}
+				}
+				x[level] = nextChoice(p);
+				step = TRY;
+			}
+		}
+	}
+
+	/**
+	 * Count the remaining solutions.
+	 * @return
+	 */
+	public long countSolutions() {
+		long n = 0;
+		while (nextSolution() != null) n++;
+		return n;
+	}
+
+	/**
+	 * Return the last solution as a list of (tile index and tile positions),
+	 * like DLXBasicSearch.solutionToPosition(). Valid until the next call of
+	 * nextSolution().
+	 * @return
+	 */
+	public List<List<Integer>> lastSolutionPositions() {
+		List<List<Integer>> pos = new ArrayList<List<Integer>>();
+		for (int k = 0; k < level; k++) pos.add(rowPosition(x[k]));
+		return pos;
+	}
+
+	/**
+	 * Determine if symmetric solutions would have to be eliminated by
+	 * comparing solution views, which this search does not do.
+	 * @return
+	 */
+	public boolean needsSolutionViews() {
+		return Config.eliminateSymmetry()
+				&& Config.board.sfpattern.size() != 8
+				&& (Config.isEnableExtra() || leader < 0);
+	}
+
+	/**
+	 * Return the state of this search.
+	 * @return
+	 */
+	public DLXSearchState getState() {
+		return State;
+	}
+
+	public boolean isSearchFinished() {
+		return State.searchFinished();
+	}
+
+	/******************** Private Member Functions ********************/
+
+	private void coverItem(int i) {
+		DLA.cover(i);
+		if (i <= DLA.numTiles) tileCovered[i - 1] = true;
+		else cellsLeft--;
+	}
+
+	private void uncoverItem(int i) {
+		DLA.uncover(i);
+		if (i <= DLA.numTiles) tileCovered[i - 1] = false;
+		else cellsLeft++;
+	}
+
+	/**
+	 * The tile area is not enough, or a cell cannot be covered.
+	 * @return
+	 */
+	private boolean isDirectlyFail() {
+		if (Config.tileAreaNotEnough()) return true;
+		for (int c = DLA.numTiles; c < DLA.numColumns; c++) {
+			if (DLA.columnSize(c) == 0) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Choose the active item with the fewest rows, skipping duplicated
+	 * tiles.
+	 * @return the item, 0 if there is none
+	 */
+	private int chooseItem() {
+		int best = 0, s = Integer.MAX_VALUE;
+		for (int i = DLA.rlink[0]; i != 0; i = DLA.rlink[i]) {
+			if (Config.eliminateDuplica() && i <= DLA.numTiles
+					&& Config.duplica()[i - 1] != i - 1) continue;
+			int len = DLA.len[i];
+			if (len < s) {
+				best = i;
+				s = len;
+			}
+		}
+		return best;
+	}
+
+	private int chooseFirstItem() {
+		if (leader >= 0) return leader + 1;
+		return chooseItem();
+	}
+
+	/**
+	 * Choose the leader tile like DLXBasicLinksArray.chooseLeaderTile().
+	 */
+	private void chooseLeaderTile() {
+		leader = -1;
+		if (!Config.eliminateSymmetry() || Config.isEnableExtra()) return;
+		int bestSize = Integer.MAX_VALUE;
+		for (int t = 0; t < DLA.numTiles; t++) {
+			if (Config.tiles.get(t).sfpattern.size() == 8
+					&& DLA.columnSize(t) < bestSize) {
+				leader = t;
+				bestSize = DLA.columnSize(t);
+			}
+		}
+	}
+
+	/**
+	 * Return the first choice of level 0. With a leader tile only the
+	 * choices which are not symmetric to an earlier one are kept, tried from
+	 * the top like the trail of DLXBasicSearch.
+	 * @param i - the chosen item
+	 * @return
+	 */
+	private long firstChoice(int i) {
+		if (leader < 0) return DLA.getD(i);
+		List<Long> kept = new ArrayList<Long>();
+		List<int[][]> views = new ArrayList<int[][]>();
+		for (long p = DLA.getU(i); p != i; p = DLA.getU(p)) {
+			List<List<Integer>> s = new ArrayList<List<Integer>>();
+			s.add(rowPosition(p));
+			int[][] v = Symmetry.solutionView(s);
+			boolean symmetric = false;
+			for (int[][] w: views) {
+				if (!Symmetry.isAsymmetric(v, w)) {
+					symmetric = true;
+					break;
+				}
+			}
+			if (!symmetric) {
+				kept.add(p);
+				views.add(v);
+			}
+		}
+		first = new long[kept.size()];
+		for (int k = 0; k < first.length; k++) {
+			first[k] = kept.get(first.length - 1 - k);
+		}
+		firstIdx = 0;
+		State.setSymmetryEliminatedByLeader(true);
+		return first.length > 0 ? first[0] : i;
+	}
+
+	/**
+	 * Return the choice after p on the current level, or the chosen item
+	 * when there is none.
+	 * @param p
+	 * @return
+	 */
+	private long nextChoice(long p) {
+		if (level == 0 && first != null) {
+			return ++firstIdx < first.length ? first[firstIdx] : item[0];
+		}
+		return DLA.getD(p);
+	}
+
+	/**
+	 * Determine if a duplicated tile is used after the duplicates with
+	 * smaller ids, like DLXBasicSearch. The leader tile choices are not
+	 * checked.
+	 * @param p
+	 * @return
+	 */
+	private boolean duplicatedTileInOrder(long p) {
+		if (!Config.eliminateDuplica() || (level == 0 && first != null))
+			return true;
+		long q = p;
+		while (DLA.getTop(q - 1) > 0) q--;
+		int t = DLA.getTop(q) - 1;
+		int[] duplica = Config.duplica();
+		int j = t;
+		while (j > duplica[j]) {
+			j = duplica[j];
+			if (!tileCovered[j]) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Return the row of node p as (tile index and tile positions).
+	 * @param p
+	 * @return
+	 */
+	private List<Integer> rowPosition(long p) {
+		int[] cols = DLA.rowColumns(p);
+		List<Integer> pos = new ArrayList<Integer>();
+		pos.add(cols[0]);
+		for (int k = 1; k < cols.length; k++) pos.add(cols[k] - DLA.numTiles);
+		return pos;
+	}
+
+	/**
+	 * Demo: count the solutions of a puzzle on off-heap and heap links.
+	 * @param args - puzzle file, -spin, -flip, -nosymmetry
+	 */
+	public static void main(String args[]) {
+		String path = args.length > 0 ? args[0] : "testcases/pentominoes6x10.txt";
+		DLXPuzzle puzzle = DLXPuzzle.fromFile(path);
+		DLXConfig config = new DLXConfig();
+		config.verb = false;
+		config.setPuzzle(puzzle);
+		for (int i = 1; i < args.length; i++) {
+			if (args[i].equals("-spin")) config.setEnableSpin(true);
+			if (args[i].equals("-flip")) {
+				config.setEnableSpin(true);
+				config.setEnableSpinFlip(true);
+			}
+			if (args[i].equals("-nosymmetry")) config.setEliminateSymmetry(false);
+		}
+		config.autoSetEliminateDuplica();
+
+		long t0 = System.nanoTime();
+		DLXOffHeapLinks links = DLXOffHeapLinks.build(puzzle.board(),
+				puzzle.tiles(), config);
+		long t1 = System.nanoTime();
+		DLXOffHeapSearch s = new DLXOffHeapSearch(links, config);
+		long n = s.countSolutions();
+		long t2 = System.nanoTime();
+		System.out.println("Off-heap: " + links.numRows() + " rows, "
+				+ links.numNodes() + " nodes, " + links.memoryBytes() / 1024
+				+ " KB direct memory, build " + (t1 - t0) / 1000000 + " ms");
+		System.out.println("Off-heap: " + n + " solutions"
+				+ (s.needsSolutionViews() ? " (with symmetric copies)" : "")
+				+ ", " + s.getState().nodes() + " nodes, "
+				+ (t2 - t1) / 1000000 + " ms");
+		links.close();
+
+		DLX dlx = new DLX(puzzle);
+		dlx.Config.verb = false;
+		dlx.Config.setEnableSpin(config.isEnableSpin());
+		dlx.Config.setEnableSpinFlip(config.isEnableSpinFlip());
+		dlx.Config.setEliminateSymmetry(config.eliminateSymmetry());
+		t0 = System.nanoTime();
+		dlx.preProcess();
+		n = dlx.countSolutions();
+		System.out.println("Heap:     " + n + " solutions, " + dlx.getNodes()
+				+ " nodes, " + (System.nanoTime() - t0) / 1000000 + " ms");
+	}
+
+}
@@ -0,0 +1,135 @@
+package dlx;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DLX Orientation Counter
+ *
+ * Decides which spin/flip configurations a solution of the spin/flip search
+ * is valid under, so that a single traversal of the spin/flip links gives the
+ * solution counts of the fixed, spin and spin/flip configurations.
+ *
+ * The spin/flip search eliminates duplicated tiles with the spin/flip rings,
+ * so one solution stands for all relabelings of tiles which are identical
+ * under spin/flip. For a finer configuration each placement must be taken by
+ * a tile of the one ring (of that configuration) whose orientations include
+ * the placed shape; the solution counts once if no ring is used more often
+ * than it has tiles, and zero times otherwise.
+ *
+ * @author Deyuan Guo, Dawei Fan
+ */
+public class DLXOrientationCounter {
+
+	/******************** Public Member Variables ********************/
+
+	/** Configuration bits of validConfigurations() */
+	public static final int CONFIG_FIXED = 1;
+	public static final int CONFIG_SPIN = 2;
+	public static final int CONFIG_SPINFLIP = 4;
+
+	/******************** Private Member Variables ********************/
+
+	/** The links built for all orientations */
+	private DLXBasicLinksArray DLA = null;
+
+	/** For fixed and spin: the ring taking each row, -1 for none */
+	private int[][] ringOfRow = null;
+
+	/** For fixed and spin: the number of tiles of the ring led by a tile */
+	private int[][] ringSize = null;
+
+	/** Buffer for counting the used tiles of each ring */
+	private int[] used = null;
+
+	/******************** Public Member Functions ********************/
+
+	/**
+	 * Constructor of DLXOrientationCounter
+	 * @param dla - links built for all spins and flips
+	 * @param config - configuration holding the duplica rings
+	 */
+	public DLXOrientationCounter(DLXBasicLinksArray dla, DLXConfig config) {
+		DLA = dla;
+		int[][] rings = config.getDuplicaRings();
+		int[] ringSF = rings[2];
+		int n = DLA.numTiles;
+
+		ringOfRow = new int[2][DLA.numRows];
+		ringSize = new int[2][n];
+		used = new int[n];
+
+		/* Rows of tiles identical under spin/flip with the same cells */
+		Map<List<Integer>, List<Integer>> sameCells =
+				new HashMap<List<Integer>, List<Integer>>();
+		for (int r = 0; r < DLA.numRows; r++) {
+			List<Integer> key = new ArrayList<Integer>();
+			key.add(ringLeader(ringSF, DLA.rowTile(r)));
+			for (int c: DLA.rowCells(r)) key.add(c);
+			List<Integer> rows = sameCells.get(key);
+			if (rows == null) {
+				rows = new ArrayList<Integer>();
+				sameCells.put(key, rows);
+			}
+			rows.add(r);
+		}
+
+		for (int m = 0; m < 2; m++) {
+			int[] ring = rings[m];
+			for (int t = 0; t < n; t++) ringSize[m][ringLeader(ring, t)]++;
+			for (List<Integer> rows: sameCells.values()) {
+				/* Tiles taking these cells with an orientation allowed in
+				 * configuration m all belong to one ring of m. */
+				int leader = -1;
+				for (int r: rows) {
+					if (DLA.orientation(r) <= m) {
+						leader = ringLeader(ring, DLA.rowTile(r));
+						break;
+					}
+				}
+				for (int r: rows) ringOfRow[m][r] = leader;
+			}
+		}
+	}
+
+	/**
+	 * Return the configurations a spin/flip solution is valid under.
+	 * @param rows - the rows of a solution
+	 * @return bits of CONFIG_FIXED, CONFIG_SPIN and CONFIG_SPINFLIP
+	 */
+	public int validConfigurations(int[] rows) {
+		int bits = CONFIG_SPINFLIP;
+		for (int m = 0; m < 2; m++) {
+			boolean valid = true;
+			for (int r: rows) {
+				int q = ringOfRow[m][r];
+				if (q < 0 || ++used[q] > ringSize[m][q]) valid = false;
+			}
+			for (int r: rows) {
+				int q = ringOfRow[m][r];
+				if (q >= 0) used[q] = 0;
+			}
+			if (valid) bits |= (m == 0) ? CONFIG_FIXED : CONFIG_SPIN;
+		}
+		return bits;
+	}
+
+	/******************** Private Member Functions ********************/
+
+	/**
+	 * Return the smallest tile index of a duplica ring.
+	 * @param ring
+	 * @param t
+	 * @return
+	 */
+	private static int ringLeader(int[] ring, int t) {
+		int leader = t;
+		for (int k = ring[t]; k != t; k = ring[k]) {
+			if (k < leader) leader = k;
+		}
+		return leader;
+	}
+
+}
@@ -0,0 +1,375 @@
+package dlx;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * DLX Dead Pattern Table
+ *
+ * Every region shape up to a maximum size which can be tiled by the tiles
+ * of a puzzle, mapped to the multisets of tile shapes which tile it. A
+ * small region of uncovered cells whose shape is not in the table, or
+ * whose tilings all need tiles which are used already, cannot be filled.
+ *
+ * Shapes are normalized by translation and the allowed orientations (none,
+ * spins, or spins and flips) and packed into a long: height and width in
+ * the top bits, and a bit per cell of the bounding box. The table is built
+ * by growing tilings one adjacent tile at a time, in increasing area, so
+ * all tilings of a connected region are reached. If the number of entries
+ * exceeds a budget, the maximum size is lowered to the largest complete
+ * area.
+ *
+ * Tiles with the same shapes form one shape class; the table counts tiles
+ * per class.
+ *
+ * @author Deyuan Guo, Dawei Fan
+ */
+public class DLXPatternTable {
+
+	/******************** Public Member Variables ********************/
+
+	/** Largest region size whose key fits into a long */
+	public static final int MAX_SIZE = 14;
+
+	/******************** Private Member Variables ********************/
+
+	/** Maximum number of (region, tiles) entries */
+	private static final int BUDGET = 200000;
+
+	/** The cell bits of a key */
+	private static final long BITS = (1L << 56) - 1;
+
+	/** Side of the scratch grids used while growing regions */
+	private static final int GRID = 48;
+
+	/** Transform counts: identity, rotations, rotations and reflections */
+	private final int transforms;
+
+	/** The shapes of each class, every shape as int[] {r0, c0, r1, c1, ...} */
+	private final List<List<int[]>> classShapes;
+
+	/** The number of tiles of each class */
+	private final int[] classSize;
+
+	/** Region key to the tile counts per class of its tilings */
+	private final Map<Long, List<int[]>> table = new HashMap<Long, List<int[]>>();
+
+	/** Regions up to this area are complete in the table */
+	private int maxSize = 0;
+
+	/** Cells of the region being grown, and cells next to it */
+	private boolean[] grid = new boolean[GRID * GRID];
+	private boolean[] freeMark = new boolean[GRID * GRID];
+
+	/******************** Public Member Functions ********************/
+
+	/**
+	 * Build the table.
+	 * @param shapes - the shapes of each class, closed under the allowed
+	 * orientations
+	 * @param sizes - the number of tiles of each class
+	 * @param transforms - 1, 4 or 8 allowed orientations
+	 * @param size - the requested maximum region size
+	 */
+	public DLXPatternTable(List<List<int[]>> shapes, int[] sizes,
+			int transforms, int size) {
+		this.transforms = transforms;
+		classShapes = shapes;
+		classSize = sizes;
+		build(Math.min(size, MAX_SIZE));
+	}
+
+	/**
+	 * Return the largest region size covered by the table.
+	 * @return
+	 */
+	public int maxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Return the number of region shapes in the table.
+	 * @return
+	 */
+	public int size() {
+		return table.size();
+	}
+
+	/**
+	 * Determine if a region can be tiled by the remaining tiles.
+	 * @param rs - row of each cell
+	 * @param cs - column of each cell
+	 * @param n - the number of cells, at most maxSize()
+	 * @param remaining - the number of unused tiles of each class
+	 * @return
+	 */
+	public boolean isFillable(int[] rs, int[] cs, int n, int[] remaining) {
+		long key = canonical(rs, cs, n);
+		if (key == -1) return true;
+		List<int[]> tilings = table.get(key);
+		if (tilings == null) return false;
+		for (int[] t: tilings) {
+			boolean ok = true;
+			for (int c = 0; c < t.length && ok; c++) ok = t[c] <= remaining[c];
+			if (ok) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Close a shape under a number of orientations.
+	 * @param shape - int[] {r0, c0, r1, c1, ...}
+	 * @param transforms - 1, 4 or 8
+	 * @return the distinct normalized shapes
+	 */
+	public static List<int[]> orientations(int[] shape, int transforms) {
+		int n = shape.length / 2;
+		List<int[]> list = new ArrayList<int[]>();
+		Set<Long> seen = new HashSet<Long>();
+		int[] rs = new int[n], cs = new int[n];
+		for (int t = 0; t < transforms; t++) {
+			for (int i = 0; i < n; i++) {
+				int[] p = transform(shape[2 * i], shape[2 * i + 1], t);
+				rs[i] = p[0];
+				cs[i] = p[1];
+			}
+			if (seen.add(encode(rs, cs, n))) {
+				int minR = Integer.MAX_VALUE, minC = Integer.MAX_VALUE;
+				for (int i = 0; i < n; i++) {
+					minR = Math.min(minR, rs[i]);
+					minC = Math.min(minC, cs[i]);
+				}
+				int[] s = new int[2 * n];
+				for (int i = 0; i < n; i++) {
+					s[2 * i] = rs[i] - minR;
+					s[2 * i + 1] = cs[i] - minC;
+				}
+				list.add(s);
+			}
+		}
+		return list;
+	}
+
+	/******************** Private Member Functions ********************/
+
+	/**
+	 * Grow the table area by area.
+	 * @param size
+	 */
+	private void build(int size) {
+		int classes = classShapes.size();
+		List<List<long[]>> byArea = new ArrayList<List<long[]>>();
+		for (int a = 0; a <= size; a++) byArea.add(new ArrayList<long[]>());
+		Set<String> seen = new HashSet<String>();
+		int entries = 0;
+
+		/* Single tiles */
+		for (int c = 0; c < classes; c++) {
+			if (classSize[c] == 0) continue;
+			for (int[] s: classShapes.get(c)) {
+				int n = s.length / 2;
+				if (n > size || n == 0) continue;
+				int[] combo = new int[classes];
+				combo[c] = 1;
+				entries += add(s, combo, byArea, seen);
+			}
+		}
+
+		maxSize = size;
+		for (int a = 1; a <= size; a++) {
+			if (entries > BUDGET) {
+				/* areas up to a - 1 have been expanded, so area a is
+				 * complete, larger ones may not be */
+				maxSize = a;
+				break;
+			}
+			for (long[] state: byArea.get(a)) {
+				int[] region = decode(state[0]);
+				int[] combo = new int[classes];
+				for (int c = 0; c < classes; c++) combo[c] = (int) state[1 + c];
+				entries += expand(region, combo, size, byArea, seen);
+			}
+		}
+
+		/* Drop entries larger than the complete size */
+		if (maxSize < size) {
+			List<Long> drop = new ArrayList<Long>();
+			for (Long k: table.keySet()) {
+				if (Long.bitCount(k & BITS) > maxSize) drop.add(k);
+			}
+			for (Long k: drop) table.remove(k);
+		}
+	}
+
+	/**
+	 * Add the tilings of a region with one more adjacent tile.
+	 * @return the number of new entries
+	 */
+	private int expand(int[] region, int[] combo, int size,
+			List<List<long[]>> byArea, Set<String> seen) {
+		int n = region.length / 2;
+		for (int i = 0; i < n; i++) grid[cell(region[2 * i], region[2 * i + 1])] = true;
+		List<int[]> free = new ArrayList<int[]>();
+		int[] dr = {-1, 1, 0, 0}, dc = {0, 0, -1, 1};
+		for (int i = 0; i < n; i++) {
+			for (int d = 0; d < 4; d++) {
+				int r = region[2 * i] + dr[d], c = region[2 * i + 1] + dc[d];
+				if (!grid[cell(r, c)] && !freeMark[cell(r, c)]) {
+					freeMark[cell(r, c)] = true;
+					free.add(new int[] {r, c});
+				}
+			}
+		}
+
+		int added = 0;
+		for (int k = 0; k < combo.length; k++) {
+			if (combo[k] >= classSize[k]) continue;
+			for (int[] s: classShapes.get(k)) {
+				int m = s.length / 2;
+				if (n + m > size) continue;
+				for (int[] f: free) {
+					for (int a = 0; a < m; a++) {
+						int or = f[0] - s[2 * a], oc = f[1] - s[2 * a + 1];
+						boolean overlap = false;
+						for (int j = 0; j < m && !overlap; j++) {
+							overlap = grid[cell(s[2 * j] + or, s[2 * j + 1] + oc)];
+						}
+						if (overlap) continue;
+						int[] u = Arrays.copyOf(region, 2 * (n + m));
+						for (int j = 0; j < m; j++) {
+							u[2 * (n + j)] = s[2 * j] + or;
+							u[2 * (n + j) + 1] = s[2 * j + 1] + oc;
+						}
+						int[] next = combo.clone();
+						next[k]++;
+						added += add(u, next, byArea, seen);
+					}
+				}
+			}
+		}
+
+		for (int i = 0; i < n; i++) grid[cell(region[2 * i], region[2 * i + 1])] = false;
+		for (int[] f: free) freeMark[cell(f[0], f[1])] = false;
+		return added;
+	}
+
+	/**
+	 * Add a tiling of a region, unless known.
+	 * @return 1 if added
+	 */
+	private int add(int[] region, int[] combo, List<List<long[]>> byArea,
+			Set<String> seen) {
+		int n = region.length / 2;
+		int[] rs = new int[n], cs = new int[n];
+		for (int i = 0; i < n; i++) {
+			rs[i] = region[2 * i];
+			cs[i] = region[2 * i + 1];
+		}
+		long key = canonical(rs, cs, n);
+		if (key == -1) return 0;
+		if (!seen.add(key + Arrays.toString(combo))) return 0;
+
+		List<int[]> tilings = table.get(key);
+		if (tilings == null) {
+			tilings = new ArrayList<int[]>();
+			table.put(key, tilings);
+		}
+		tilings.add(combo);
+		long[] state = new long[1 + combo.length];
+		state[0] = key;
+		for (int c = 0; c < combo.length; c++) state[1 + c] = combo[c];
+		byArea.get(n).add(state);
+		return 1;
+	}
+
+	/**
+	 * Return the smallest key of a region over the allowed orientations.
+	 * @return the key, -1 if the bounding box is too large
+	 */
+	private long canonical(int[] rs, int[] cs, int n) {
+		long best = -1;
+		int[] tr = new int[n], tc = new int[n];
+		for (int t = 0; t < transforms; t++) {
+			for (int i = 0; i < n; i++) {
+				/* reflect, then rotate a quarter turn (r, c) -> (c, -r) */
+				int r = rs[i], c = (t >= 4) ? -cs[i] : cs[i];
+				switch (t & 3) {
+				case 0: tr[i] = r; tc[i] = c; break;
+				case 1: tr[i] = c; tc[i] = -r; break;
+				case 2: tr[i] = -r; tc[i] = -c; break;
+				default: tr[i] = -c; tc[i] = r; break;
+				}
+			}
+			long k = encode(tr, tc, n);
+			if (k == -1) return -1;
+			if (best == -1 || k < best) best = k;
+		}
+		return best;
+	}
+
+	/**
+	 * Orientation t: reflect if t >= 4, then rotate t % 4 quarter turns.
+	 */
+	private static int[] transform(int r, int c, int t) {
+		if (t >= 4) c = -c;
+		for (int k = 0; k < t % 4; k++) {
+			int x = r;
+			r = c;
+			c = -x;
+		}
+		return new int[] {r, c};
+	}
+
+	/**
+	 * Pack a region normalized by translation into a long.
+	 * @return the key, -1 if the bounding box is too large
+	 */
+	private static long encode(int[] rs, int[] cs, int n) {
+		int minR = Integer.MAX_VALUE, minC = Integer.MAX_VALUE;
+		int maxR = Integer.MIN_VALUE, maxC = Integer.MIN_VALUE;
+		for (int i = 0; i < n; i++) {
+			minR = Math.min(minR, rs[i]);
+			minC = Math.min(minC, cs[i]);
+			maxR = Math.max(maxR, rs[i]);
+			maxC = Math.max(maxC, cs[i]);
+		}
+		int h = maxR - minR + 1, w = maxC - minC + 1;
+		if (h > 15 || w > 15 || h * w > 56) return -1;
+		long bits = 0;
+		for (int i = 0; i < n; i++) {
+			bits |= 1L << ((rs[i] - minR) * w + cs[i] - minC);
+		}
+		return ((long) h << 60) | ((long) w << 56) | bits;
+	}
+
+	/**
+	 * Unpack a key into int[] {r0, c0, r1, c1, ...}.
+	 */
+	private static int[] decode(long key) {
+		int w = (int) ((key >>> 56) & 15);
+		long bits = key & BITS;
+		int[] cells = new int[2 * Long.bitCount(bits)];
+		int i = 0;
+		for (int b = 0; b < 56; b++) {
+			if ((bits & (1L << b)) != 0) {
+				cells[i++] = b / w;
+				cells[i++] = b % w;
+			}
+		}
+		return cells;
+	}
+
+	/**
+	 * Index of a cell in the scratch grids. Regions lie in a 15 x 15 box
+	 * at the origin, and placed tiles reach out by less than 16 cells.
+	 */
+	private static int cell(int r, int c) {
+		return (r + 16) * GRID + c + 16;
+	}
+
+}
@@ -0,0 +1,267 @@
+package dlx;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * DLX Randomized Restart Portfolio
+ *
+ * Finds one solution with several differently ordered searches on the same
+ * puzzle at once, for a short time to the first solution: a search which
+ * makes a bad early choice can take minutes where another order takes
+ * milliseconds. Every worker runs its own DLX instance on a thread of its
+ * own. The first solution found is returned and the other workers are
+ * cancelled.
+ *
+ * Worker 0 runs the configured search without restarts, so the portfolio
+ * is never worse than the plain search on its own core. The other workers
+ * combine a column heuristic and a value order whose ties are broken by a
+ * DLXRandomOrder, and restart with a node budget of unit * luby(k) for the
+ * k-th run (1, 1, 2, 1, 1, 2, 4, 1, ...). Each restart takes the next
+ * random numbers, so it tries other rows.
+ *
+ * The seed of a worker is derived from the portfolio seed and the worker
+ * index, and a worker depends on nothing else. replay() therefore finds
+ * the same solution again on the calling thread, with the seed and worker
+ * of a Result.
+ *
+ * @author Deyuan Guo, Dawei Fan
+ */
+public class DLXPortfolio {
+
+	/******************** Public Member Variables ********************/
+
+	/** The default node budget of a restart of length 1 */
+	public static final long DEFAULT_UNIT = 1000;
+
+	/**
+	 * Result record of a portfolio search.
+	 */
+	public static class Result {
+		/** The first solution, null if there is none */
+		public List<List<Integer>> solution;
+		/** The worker which found it, and the portfolio seed */
+		public int worker = -1;
+		public long seed;
+		/** The heuristic and order of the worker */
+		public String heuristic;
+		public String order;
+		/** Restarts and search nodes of the worker */
+		public int restarts;
+		public long nodes;
+		/** Wall time in milliseconds */
+		public double millis;
+
+		@Override
+		public String toString() {
+			if (solution == null) return "no solution, " + millis + " ms";
+			return "worker " + worker + " (seed " + seed + ", " + heuristic
+					+ ", " + order + "): " + restarts + " restarts, "
+					+ nodes + " nodes, " + millis + " ms";
+		}
+	}
+
+	/******************** Private Member Variables ********************/
+
+	/** The heuristics and base orders the workers take turns in */
+	private static final DLXColumnHeuristic[] HEURISTICS = {
+		DLXColumnHeuristic.MIN_SIZE, DLXColumnHeuristic.CELLS_FIRST,
+		DLXColumnHeuristic.FEWEST_NEIGHBOURS
+	};
+	private static final DLXValueOrder[] ORDERS = {
+		DLXValueOrder.NATURAL, DLXValueOrder.LEAST_CONSTRAINING,
+		DLXValueOrder.WALLS_FIRST
+	};
+
+	/** Search nodes between two checks of the other workers */
+	private static final long QUANTUM = 20000;
+
+	/** The shared puzzle */
+	private DLXPuzzle puzzle = null;
+
+	/** Options copied to the configuration of every worker */
+	private DLXConfig options = null;
+
+	private int workers = Runtime.getRuntime().availableProcessors();
+	private long unit = DEFAULT_UNIT;
+
+	/******************** Public Member Functions ********************/
+
+	/**
+	 * Constructor of DLXPortfolio
+	 * @param p
+	 * @param config - spin/flip/symmetry/duplica and pruning options
+	 */
+	public DLXPortfolio(DLXPuzzle p, DLXConfig config) {
+		puzzle = p;
+		options = config;
+	}
+
+	public void setWorkers(int n) { workers = Math.max(1, n); }
+	public void setRestartUnit(long nodes) { unit = Math.max(1, nodes); }
+
+	/**
+	 * Find a solution with all workers.
+	 * @param seed - the portfolio seed
+	 * @return the result of the first worker which found a solution, or a
+	 * result without solution if the puzzle has none
+	 */
+	public Result solve(final long seed) {
+		long start = System.nanoTime();
+		final AtomicBoolean done = new AtomicBoolean(false);
+		final List<DLX> running = new ArrayList<DLX>();
+		List<Callable<Result>> jobs = new ArrayList<Callable<Result>>();
+		for (int i = 0; i < workers; i++) {
+			final int w = i;
+			jobs.add(new Callable<Result>() {
+				@Override
+				public Result call() {
+					Result r = run(seed, w, done, running);
+					/* A solution, or the proof that there is none */
+					if (r != null && done.compareAndSet(false, true)) {
+						synchronized (running) {
+							for (DLX d: running) d.cancel();
+						}
+						return r;
+					}
+					return null;
+				}
+			});
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(workers);
+		Result best = null;
+		try {
+			for (Future<Result> f: pool.invokeAll(jobs)) {
+				Result r = f.get();
+				if (r != null) best = r;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+		if (best == null) best = new Result();
+		best.millis = (System.nanoTime() - start) / 1000000.0;
+		return best;
+	}
+
+	/**
+	 * Run one worker of a portfolio alone on this thread. It finds the
+	 * same solution as in solve() with the same seed.
+	 * @param seed - the portfolio seed
+	 * @param worker
+	 * @return
+	 */
+	public Result replay(long seed, int worker) {
+		long start = System.nanoTime();
+		Result r = run(seed, worker, new AtomicBoolean(false),
+				new ArrayList<DLX>());
+		r.millis = (System.nanoTime() - start) / 1000000.0;
+		return r;
+	}
+
+	/**
+	 * Return the k-th term of the Luby sequence, k >= 1.
+	 * @param k
+	 * @return
+	 */
+	public static long luby(int k) {
+		int i = 1;
+		while ((1 << i) - 1 < k) i++;
+		while (k != (1 << i) - 1) {
+			k -= (1 << (i - 1)) - 1;
+			i = 1;
+			while ((1 << i) - 1 < k) i++;
+		}
+		return 1L << (i - 1);
+	}
+
+	/******************** Private Member Functions ********************/
+
+	/**
+	 * Run a worker until it finds a solution, proves there is none, or the
+	 * portfolio is done.
+	 * @param seed
+	 * @param worker
+	 * @param done - set when another worker has finished
+	 * @param running - the searches to cancel when done
+	 * @return the result, or null if cancelled
+	 */
+	private Result run(long seed, int worker, AtomicBoolean done,
+			List<DLX> running) {
+		DLX dlx = new DLX(puzzle);
+		DLXConfig c = dlx.Config;
+		c.setEnableSpin(options.isEnableSpin());
+		c.setEnableSpinFlip(options.isEnableSpinFlip());
+		c.setEliminateSymmetry(options.eliminateSymmetry());
+		c.setEnableEliminateDuplica(options.isEnableEliminateDuplica());
+		c.setEnableLookahead(options.isEnableLookahead());
+		c.setEnableRegionPruning(options.isEnableRegionPruning());
+		c.setDeadPatternSize(options.getDeadPatternSize());
+		c.setEnableColoring(options.isEnableColoring());
+
+		Result r = new Result();
+		r.worker = worker;
+		r.seed = seed;
+		boolean restarts = worker > 0;
+		if (restarts) {
+			int k = worker - 1;
+			c.setColumnHeuristic(HEURISTICS[k % HEURISTICS.length]);
+			c.setValueOrder(new DLXRandomOrder(
+					ORDERS[(k / HEURISTICS.length) % ORDERS.length],
+					workerSeed(seed, worker)));
+		} else {
+			c.setColumnHeuristic(options.getColumnHeuristic());
+			c.setValueOrder(options.getValueOrder());
+		}
+		r.heuristic = c.getColumnHeuristic().toString();
+		r.order = c.getValueOrder().toString();
+		dlx.preProcess();
+		synchronized (running) {
+			if (done.get()) return null;
+			running.add(dlx);
+		}
+
+		for (int k = 1; ; k++) {
+			long budget = restarts ? unit * luby(k) : Long.MAX_VALUE;
+			List<List<Integer>> sol = null;
+			while (sol == null && !dlx.isSearchFinished()
+					&& dlx.getNodes() < budget) {
+				if (done.get()) return null;
+				sol = dlx.nextSolution(Math.min(QUANTUM,
+						budget - dlx.getNodes()));
+			}
+			r.nodes += dlx.getNodes();
+			if (sol != null || (dlx.isSearchFinished() && !dlx.isCancelled())) {
+				r.solution = sol;
+				return r;
+			}
+			if (done.get() || dlx.isCancelled()) return null;
+			r.restarts++;
+			dlx.resetSearch();
+		}
+	}
+
+	/**
+	 * Return the seed of a worker.
+	 * @param seed - the portfolio seed
+	 * @param worker
+	 * @return
+	 */
+	private static long workerSeed(long seed, int worker) {
+		long h = seed * 0x9E3779B97F4A7C15L + worker;
+		h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+		h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+		return h ^ (h >>> 31);
+	}
+
+}
@@ -0,0 +1,398 @@
+package dlx;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * DLX Profile Counter
+ *
+ * Counts the exact covers of narrow boards by a transfer-matrix (broken
+ * profile) dynamic program instead of enumerating them. The board cells
+ * are numbered along the longer axis of the board, column by column for a
+ * wide board and row by row for a tall one. The cells are visited in this
+ * order, and the first uncovered cell is covered by a row of an unused tile
+ * whose first cell it is. The rows of a tile never reach further than
+ * window cells ahead, so the state after a cell is
+ *
+ *   (occupancy of the next window cells, the set of tiles used)
+ *
+ * packed into a long, and the states of one cell are kept with their
+ * counts in a DLXStateMap. On a board of height h the window is about h
+ * times the tile length, so the number of states stays small when h is
+ * small.
+ *
+ * countCut() cuts the board across the longer axis instead, and sweeps the
+ * two halves from both ends towards the cut at the same time. The first
+ * half is tiled by the rows which start before the cut, and ends with the
+ * cells they cover behind the cut; the second half is tiled by the rows
+ * behind the cut and leaves those cells open. Both halves key their states
+ * by this crossing pattern plus the tiles used, and a hash join of the
+ * patterns with complementary tile sets gives the count.
+ *
+ * Boards whose window is wider than DLXConfig.getProfileWindow() are not
+ * counted here. The number of states is not known in advance; a layer which
+ * grows beyond the memory limit of DLXConfig.getProfileMemory() gives up.
+ * In both cases the count is -1 so the caller can fall back to another
+ * counter.
+ *
+ * Symmetric solutions are eliminated as in DLXComponentCounter, by allowing
+ * only the first level rows of the leader tile.
+ *
+ * @author Deyuan Guo, Dawei Fan
+ */
+public class DLXProfileCounter {
+
+	/******************** Private Member Variables ********************/
+
+	/** Bytes per state of the two layers, at the largest load */
+	private static final int STATE_BYTES = 64;
+
+	/** Reference of class DLXConfig */
+	private DLXConfig Config = null;
+
+	/** The state of the search, for the node count and cancellation */
+	private DLXSearchState State = null;
+
+	private int numTiles = 0;
+	private int numCells = 0;
+
+	/** The links, for the rows of each tile */
+	private DLXBasicLinksArray DLA = null;
+
+	/** The scan position of each cell, and the first position of each
+	 *  line across the longer axis */
+	private int[] position = null;
+	private int[] lineStart = null;
+
+	/** The rows counted, with their first and last scan position */
+	private boolean[] rowOk = null;
+	private int[] rowLo = null;
+	private int[] rowHi = null;
+	private int[] rowTile = null;
+
+	/** The occupancy window, in cells */
+	private int window = 0;
+
+	/** The states allowed in one layer */
+	private long limit = 0;
+
+	/******************** Public Member Functions ********************/
+
+	/**
+	 * Constructor of DLXProfileCounter
+	 * @param dla
+	 * @param config - the board is taken from here
+	 * @param state
+	 */
+	public DLXProfileCounter(DLXBasicLinksArray dla, DLXConfig config,
+			DLXSearchState state) {
+		DLA = dla;
+		Config = config;
+		State = state;
+		numTiles = dla.numTiles;
+		numCells = dla.numCells;
+		position = scanOrder(config.board.data);
+		limit = Math.max(1, ((long) config.getProfileMemory() << 20)
+				/ STATE_BYTES);
+	}
+
+	/**
+	 * Count the solutions.
+	 * @param first - the first level rows, null to count all exact covers
+	 * @return the number of solutions, or -1 if the states do not fit
+	 */
+	public long count(List<DLXCell> first) {
+		if (!collectRows(first) || window + numTiles > 63) return -1;
+		Sweep s = new Sweep(false, numCells, 0, 0);
+		DLXStateMap end = s.call();
+		State.countNodes(s.nodes);
+		if (end == null) return -1;
+		if (State.cancelled()) return 0;
+
+		/* All cells are covered; without extra tiles the areas match, so
+		 * every tile is used */
+		long total = 0;
+		for (int i = 0; i < end.keys.length; i++) {
+			if (end.keys[i] != DLXStateMap.EMPTY) total += end.counts[i];
+		}
+		if (Config.verb) {
+			System.out.println("Profile window = " + window
+					+ ", peak states = " + s.peak);
+		}
+		return total;
+	}
+
+	/**
+	 * Count the solutions by sweeping the two halves of the board towards
+	 * a cut on two threads, and joining them at the cut.
+	 * @param first - the first level rows, null to count all exact covers
+	 * @return the number of solutions, or -1 if the states do not fit or
+	 * extra tiles are enabled
+	 */
+	public long countCut(List<DLXCell> first) {
+		if (Config.isEnableExtra() || lineStart.length < 5) return -1;
+		if (!collectRows(first) || 2 * window + numTiles > 63) return -1;
+		int cut = chooseCut();
+
+		/* The cells behind the cut which rows from before it can cover */
+		long cross = 0;
+		for (int r = 0; r < DLA.numRows; r++) {
+			if (!rowOk[r] || rowLo[r] >= cut || rowHi[r] < cut) continue;
+			for (int i: DLA.rowCells(r)) {
+				if (position[i] >= cut) cross |= 1L << (position[i] - cut);
+			}
+		}
+
+		Sweep head = new Sweep(false, cut, 0, 0);
+		Sweep tail = new Sweep(true, numCells - cut, cut, cross);
+		List<Callable<DLXStateMap>> jobs = new ArrayList<Callable<DLXStateMap>>();
+		jobs.add(head);
+		jobs.add(tail);
+		ExecutorService pool = Executors.newFixedThreadPool(2);
+		DLXStateMap h = null, t = null;
+		try {
+			List<Future<DLXStateMap>> f = pool.invokeAll(jobs);
+			h = f.get(0).get();
+			t = f.get(1).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return 0;
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+		State.countNodes(head.nodes + tail.nodes);
+		if (h == null || t == null) return -1;
+		if (State.cancelled()) return 0;
+
+		/* Join: the second half leaves open what the first half covers
+		 * behind the cut, and uses the other tiles */
+		long occMask = (1L << window) - 1;
+		long all = (1L << numTiles) - 1;
+		long total = 0;
+		for (int i = 0; i < t.keys.length; i++) {
+			long key = t.keys[i];
+			if (key == DLXStateMap.EMPTY) continue;
+			long open = (key >>> window) & occMask;
+			long used = key >>> (2 * window);
+			total += t.counts[i] * h.get(open | ((all & ~used) << window));
+		}
+		if (Config.verb) {
+			System.out.println("Profile window = " + window + ", cut at "
+					+ cut + "/" + numCells + ", peak states = " + head.peak
+					+ " + " + tail.peak + ", join " + h.size + " x " + t.size);
+		}
+		return total;
+	}
+
+	/******************** Private Member Functions ********************/
+
+	/**
+	 * Collect the rows to count and the window.
+	 * @param first - the first level rows, null for all rows
+	 * @return false if the window is too wide
+	 */
+	private boolean collectRows(List<DLXCell> first) {
+		int mask = Config.orientationMask();
+		int leader = -1;
+		boolean[] leaderRow = null;
+		if (first != null) {
+			leader = Config.getLeaderId();
+			leaderRow = new boolean[DLA.numRows];
+			for (DLXCell x: first) leaderRow[x.row] = true;
+		}
+		rowOk = new boolean[DLA.numRows];
+		rowLo = new int[DLA.numRows];
+		rowHi = new int[DLA.numRows];
+		rowTile = new int[DLA.numRows];
+		window = 1;
+		for (int r = 0; r < DLA.numRows; r++) {
+			rowTile[r] = DLA.rowTile(r);
+			if (DLA.orientation(r) > mask) continue;
+			if (rowTile[r] == leader && !leaderRow[r]) continue;
+			int lo = Integer.MAX_VALUE, hi = -1;
+			for (int i: DLA.rowCells(r)) {
+				lo = Math.min(lo, position[i]);
+				hi = Math.max(hi, position[i]);
+			}
+			rowOk[r] = true;
+			rowLo[r] = lo;
+			rowHi[r] = hi;
+			window = Math.max(window, hi - lo + 1);
+		}
+		return window <= Config.getProfileWindow();
+	}
+
+	/**
+	 * Choose the cut in the middle half of the board: before the line with
+	 * the fewest cells, the one nearest to the middle on a tie.
+	 * @return the scan position of the first cell behind the cut
+	 */
+	private int chooseCut() {
+		int lines = lineStart.length - 1;
+		int best = numCells / 2, bestCells = Integer.MAX_VALUE, bestDist = 0;
+		for (int l = lines / 4; l < lines - lines / 4; l++) {
+			int cells = lineStart[l + 1] - lineStart[l];
+			int dist = Math.abs(2 * lineStart[l] - numCells);
+			if (cells < bestCells || (cells == bestCells && dist < bestDist)) {
+				best = lineStart[l];
+				bestCells = cells;
+				bestDist = dist;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Number the cells along the longer axis of the board.
+	 * @param board
+	 * @return the scan position of each cell, numbered row by row
+	 */
+	private int[] scanOrder(char[][] board) {
+		int rows = board.length;
+		int cols = rows > 0 ? board[0].length : 0;
+		int[][] idx = new int[rows][cols];
+		int n = 0;
+		for (int r = 0; r < rows; r++) {
+			for (int c = 0; c < cols; c++) {
+				idx[r][c] = (board[r][c] != Config.S) ? n++ : -1;
+			}
+		}
+		int[] pos = new int[n];
+		int p = 0;
+		boolean wide = cols >= rows;
+		int lines = wide ? cols : rows, across = wide ? rows : cols;
+		lineStart = new int[lines + 1];
+		for (int l = 0; l < lines; l++) {
+			lineStart[l] = p;
+			for (int k = 0; k < across; k++) {
+				int i = wide ? idx[k][l] : idx[l][k];
+				if (i >= 0) pos[i] = p++;
+			}
+		}
+		lineStart[lines] = p;
+		return pos;
+	}
+
+	/**
+	 * The dynamic program over the first end cells of the scan order, or of
+	 * the reversed order. A reversed sweep only places the rows which lie
+	 * in its cells, and may leave the cells of the crossing pattern open;
+	 * they are kept in a pattern field of the state:
+	 *
+	 *   occupancy | open cells << window | used << 2 * window
+	 *
+	 * A forward sweep has no pattern field.
+	 */
+	private class Sweep implements Callable<DLXStateMap> {
+
+		boolean reverse;
+		int end;
+		int cut;
+		long cross;
+		long nodes = 0;
+		long peak = 1;
+
+		/**
+		 * Constructor of Sweep
+		 * @param reverse
+		 * @param end - the number of cells swept
+		 * @param cut - the scan position of the crossing pattern
+		 * @param cross - the cells which may be left open, from cut on
+		 */
+		Sweep(boolean reverse, int end, int cut, long cross) {
+			this.reverse = reverse;
+			this.end = end;
+			this.cut = cut;
+			this.cross = cross;
+		}
+
+		/**
+		 * Run the sweep.
+		 * @return the states after the last cell, null if they do not fit
+		 */
+		@Override
+		public DLXStateMap call() {
+			/* The rows by their first cell, as bits of the window from there */
+			int[] start = new int[end + 1];
+			int[] anchor = new int[DLA.numRows];
+			long[] bits = new long[DLA.numRows];
+			for (int r = 0; r < DLA.numRows; r++) {
+				anchor[r] = -1;
+				if (!rowOk[r]) continue;
+				int lo = reverse ? numCells - 1 - rowHi[r] : rowLo[r];
+				int hi = reverse ? numCells - 1 - rowLo[r] : rowHi[r];
+				if (lo >= end || (reverse && hi >= end)) continue;
+				for (int i: DLA.rowCells(r)) bits[r] |= 1L << (at(i) - lo);
+				anchor[r] = lo;
+				start[lo + 1]++;
+			}
+			for (int p = 0; p < end; p++) start[p + 1] += start[p];
+			int[] rowAt = new int[start[end]];
+			int[] fill = new int[end];
+			System.arraycopy(start, 0, fill, 0, end);
+			for (int r = 0; r < DLA.numRows; r++) {
+				if (anchor[r] >= 0) rowAt[fill[anchor[r]]++] = r;
+			}
+
+			int shift = reverse ? 2 * window : window;
+			long occMask = (1L << window) - 1;
+			DLXStateMap cur = new DLXStateMap(16);
+			DLXStateMap next = new DLXStateMap(16);
+			cur.add(0, 1);
+			for (int p = 0; p < end; p++) {
+				if (State.cancelled()) return cur;
+				next.clear();
+				/* The pattern bit of this cell, if it may be left open */
+				long open = 0;
+				if (reverse) {
+					int j = numCells - 1 - p - cut;
+					if (j < window && (cross & (1L << j)) != 0) open = 1L << j;
+				}
+				for (int s = 0; s < cur.keys.length; s++) {
+					long key = cur.keys[s];
+					if (key == DLXStateMap.EMPTY) continue;
+					long n = cur.counts[s];
+					long occ = key & occMask;
+					long rest = key & ~occMask;
+					if ((occ & 1) != 0) {
+						next.add((occ >>> 1) | rest, n);
+						continue;
+					}
+					if (open != 0) next.add((occ >>> 1) | rest | (open << window), n);
+					long used = key >>> shift;
+					for (int k = start[p]; k < start[p + 1]; k++) {
+						int r = rowAt[k];
+						long t = 1L << rowTile[r];
+						if ((used & t) != 0 || (occ & bits[r]) != 0) continue;
+						nodes++;
+						next.add(((occ | bits[r]) >>> 1) | rest | (t << shift), n);
+					}
+					if (next.size > limit) return null;
+				}
+				peak = Math.max(peak, next.size);
+				DLXStateMap m = cur;
+				cur = next;
+				next = m;
+			}
+			return cur;
+		}
+
+		/**
+		 * Return the position of a cell in the order of this sweep.
+		 * @param i
+		 * @return
+		 */
+		private int at(int i) {
+			return reverse ? numCells - 1 - position[i] : position[i];
+		}
+
+	}
+
+}
@@ -0,0 +1,105 @@
+package dlx;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import util.DataFileParser;
+import util.Tile;
+
+/**
+ * DLX Puzzle Model
+ *
+ * The immutable facts of a puzzle: the board, the tile list, the duplica
+ * rings and the tile area. A puzzle is built once and can be shared by any
+ * number of DLX instances, also on different threads, since nothing in it
+ * is changed after construction. Options and search state belong to each
+ * DLX instance (DLXConfig and DLXSearchState).
+ *
+ * @author Deyuan Guo, Dawei Fan
+ */
+public final class DLXPuzzle {
+
+	/******************** Private Member Variables ********************/
+
+	private final Tile board;
+	private final List<Tile> tiles;
+
+	/** Tile duplication rings without spin, with spin and with spin/flip */
+	private final int[] duplica;
+	private final int[] duplicaS;
+	private final int[] duplicaSF;
+
+	/** The total area of all tiles */
+	private final int tileArea;
+
+	/******************** Public Member Functions ********************/
+
+	/**
+	 * Constructor of DLXPuzzle. The tiles get their ids and duplica fields
+	 * here and must not be changed afterwards.
+	 * @param b - the board
+	 * @param t - tile list in area descending order
+	 */
+	public DLXPuzzle(Tile b, List<Tile> t) {
+		board = b;
+		tiles = Collections.unmodifiableList(new ArrayList<Tile>(t));
+
+		DLXConfig c = new DLXConfig();
+		c.verb = false;
+		c.recognizeDuplica(tiles);
+		int[][] rings = c.getDuplicaRings();
+		duplica = rings[0];
+		duplicaS = rings[1];
+		duplicaSF = rings[2];
+
+		int area = 0;
+		for (Tile i: tiles) area += i.area;
+		tileArea = area;
+	}
+
+	/**
+	 * Parse a puzzle file.
+	 * @param path
+	 * @return
+	 */
+	public static DLXPuzzle fromFile(String path) {
+		return fromTiles(new DataFileParser(path).ExtractTiles());
+	}
+
+	/**
+	 * Parse puzzle text which is already in memory.
+	 * @param text
+	 * @return
+	 */
+	public static DLXPuzzle fromText(String text) {
+		return fromTiles(DataFileParser.fromText(text).ExtractTiles());
+	}
+
+	public Tile board() { return board; }
+	public List<Tile> tiles() { return tiles; }
+	public int tileArea() { return tileArea; }
+
+	/**
+	 * Return copies of the duplica rings for no spin, spin and spin/flip.
+	 * @return
+	 */
+	public int[][] getDuplicaRings() {
+		return new int[][] {duplica.clone(), duplicaS.clone(),
+				duplicaSF.clone()};
+	}
+
+	/******************** Private Member Functions ********************/
+
+	/**
+	 * Build a puzzle from a parsed tile list, the board comes first.
+	 * @param t
+	 * @return
+	 */
+	private static DLXPuzzle fromTiles(List<Tile> t) {
+		if (t.isEmpty()) throw new IllegalArgumentException("Empty puzzle");
+		Tile b = t.remove(0);
+		return new DLXPuzzle(b, t);
+	}
+
+}
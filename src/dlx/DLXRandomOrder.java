@@ -0,0 +1,53 @@
+package dlx;
+
+import java.util.Random;
+
+/**
+ * DLX Random Order
+ *
+ * A value order which breaks the ties of another order at random: rows with
+ * equal base scores are tried in a random order. The random numbers come
+ * from a seeded generator, and a search takes them in a fixed sequence, so
+ * a search with the same seed, links and configuration tries the same rows
+ * in the same order again. One instance belongs to one search.
+ *
+ * @author Deyuan Guo, Dawei Fan
+ */
+public class DLXRandomOrder implements DLXValueOrder {
+
+	/******************** Private Member Variables ********************/
+
+	/** Random bits below the base score */
+	private static final int TIE_BITS = 10;
+
+	private DLXValueOrder base = null;
+	private Random random = null;
+	private long seed = 0;
+
+	/******************** Public Member Functions ********************/
+
+	/**
+	 * Constructor of DLXRandomOrder
+	 * @param base - the order whose ties are broken
+	 * @param seed
+	 */
+	public DLXRandomOrder(DLXValueOrder base, long seed) {
+		this.base = base;
+		this.seed = seed;
+		random = new Random(seed);
+	}
+
+	@Override
+	public int score(DLXCell x, DLXBasicLinksArray dla) {
+		return (base.score(x, dla) << TIE_BITS)
+				+ random.nextInt(1 << TIE_BITS);
+	}
+
+	public long getSeed() { return seed; }
+
+	@Override
+	public String toString() {
+		return base + "+random(" + seed + ")";
+	}
+
+}
@@ -0,0 +1,494 @@
+package dlx;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * DLX Region Pruner
+ *
+ * Detects placements which cut off a region of uncovered board cells whose
+ * area cannot be filled by the remaining tiles. The pruner follows the rows
+ * covered by the search (place/remove), and after a placement flood fills
+ * only the regions next to the newly covered cells, so a check costs at
+ * most the cells of those regions.
+ *
+ * A region area is fillable if it is a multiple of the gcd of the
+ * remaining tile areas (the fast path: multiples of 5 for pentominoes) and
+ * a sum of the areas of some remaining tiles. The subset sums are kept as
+ * a bitset which is rebuilt at most once per check.
+ *
+ * Regions up to DLXConfig.getDeadPatternSize() cells are also looked up in
+ * a DLXPatternTable, built in prepare() for the allowed orientations, which
+ * rejects shapes the unused tiles cannot tile. The table is only used on
+ * boards of a single color, where the shape of a region decides.
+ *
+ * With extra tiles every tile is optional, and the number of subsets of
+ * the unused tiles with each area sum is kept up to date in place/remove
+ * (adding or removing one tile area is one pass over the sums). A placement
+ * whose uncovered cells are no such sum is failed before any region is
+ * filled, and the sums also decide fillable().
+ *
+ * Only small regions are checked: the fill stops beyond a few tile areas or
+ * half of the uncovered cells, where a dead region is rare and the fill is
+ * expensive. Regions which are not next to a placement are not checked
+ * again when the remaining tiles change. So the pruning is sound but not
+ * complete.
+ *
+ * @author Deyuan Guo, Dawei Fan
+ */
+public class DLXRegionPruner {
+
+	/******************** Private Member Variables ********************/
+
+	/** Reference of class DLXConfig */
+	private DLXConfig Config = null;
+
+	private int numTiles = 0;
+	private int numCells = 0;
+
+	/** The board neighbours of each cell */
+	private int[][] nbr = null;
+
+	/** The area of each tile */
+	private int[] tileArea = null;
+
+	/** The number of unused tiles of each area */
+	private int[] countByArea = null;
+
+	/** Uncovered cells */
+	private boolean[] covered = null;
+	private int cellsLeft = 0;
+
+	/** Flood fill marks (flood ids) and stack */
+	private int[] mark = null;
+	private int stamp = 0;
+	private int[] stack = null;
+
+	/** Regions larger than CAP times the largest tile area, or than half of
+	 *  the uncovered cells, are not checked */
+	private static final int CAP = 4;
+	private int maxArea = 0;
+
+	/** Subset sums of the unused tile areas, valid until a placement */
+	private long[] reach = null;
+	private int gcd = 0;
+	private int distinct = 0;
+	private boolean reachValid = false;
+
+	/** With extra tiles: the number of subsets of the unused tiles with
+	 *  each area sum, null otherwise */
+	private long[] ways = null;
+
+	/** Counters */
+	private DLXSearchStats Stats = null;
+
+	/** The links, for the tile shapes of the rows */
+	private DLXBasicLinksArray DLA = null;
+
+	/** Board position of each cell */
+	private int[] cellR = null;
+	private int[] cellC = null;
+
+	/** Cells of the last completed flood */
+	private int[] regionR = null;
+	private int[] regionC = null;
+
+	/** Unused tiles, and the dead pattern table with the shape class of
+	 *  each tile for the prepared orientation mask */
+	private boolean[] tileUsed = null;
+	private DLXPatternTable patterns = null;
+	private int[] tileClass = null;
+	private int[] classLeft = null;
+	private int preparedMask = -1;
+	private int preparedSize = 0;
+	private boolean singleColor = true;
+
+	/** Tables and tile classes by size and orientation mask */
+	private Map<Integer, DLXPatternTable> tables =
+			new HashMap<Integer, DLXPatternTable>();
+	private Map<Integer, int[]> classes = new HashMap<Integer, int[]>();
+
+	/******************** Public Member Functions ********************/
+
+	/**
+	 * Constructor of DLXRegionPruner
+	 * @param dla - the links, for the tile areas and the number of cells
+	 * @param config - the board is taken from here
+	 * @param stats
+	 */
+	public DLXRegionPruner(DLXBasicLinksArray dla, DLXConfig config,
+			DLXSearchStats stats) {
+		Config = config;
+		Stats = stats;
+		DLA = dla;
+		numTiles = dla.numTiles;
+		numCells = dla.numCells;
+
+		tileArea = new int[numTiles];
+		for (int r = 0; r < dla.numRows; r++) {
+			tileArea[dla.rowTile(r)] = dla.rowCells(r).length;
+		}
+		for (int t = 0; t < numTiles; t++) {
+			if (tileArea[t] == 0 && config.tiles != null) {
+				tileArea[t] = config.tiles.get(t).area;
+			}
+			maxArea = Math.max(maxArea, tileArea[t]);
+		}
+		countByArea = new int[maxArea + 1];
+		for (int t = 0; t < numTiles; t++) countByArea[tileArea[t]]++;
+
+		nbr = dla.cellNeighbours();
+		cellR = dla.cellRows();
+		cellC = dla.cellColumns();
+		char[][] board = config.board.data;
+		char color = 0;
+		for (char[] line: board) {
+			for (char x: line) {
+				if (x == Config.S) continue;
+				if (color != 0 && x != color) singleColor = false;
+				color = x;
+			}
+		}
+		covered = new boolean[numCells];
+		cellsLeft = numCells;
+		mark = new int[numCells];
+		stack = new int[numCells];
+		reach = new long[(numCells >> 6) + 1];
+		regionR = new int[numCells];
+		regionC = new int[numCells];
+		tileUsed = new boolean[numTiles];
+
+		/* At most 2^62 subsets, so the counts do not overflow */
+		if (config.isEnableExtra() && numTiles < 63) {
+			int total = 0;
+			for (int t = 0; t < numTiles; t++) total += tileArea[t];
+			ways = new long[total + 1];
+			ways[0] = 1;
+			for (int t = 0; t < numTiles; t++) addWays(tileArea[t]);
+		}
+	}
+
+	/**
+	 * Build or select the dead pattern table for the orientations allowed
+	 * by the configuration. Called by preProcess; the search calls it again
+	 * if the orientations or the size change.
+	 */
+	public void prepare() {
+		int mask = Config.orientationMask();
+		preparedMask = mask;
+		preparedSize = Config.getDeadPatternSize();
+		patterns = null;
+		int size = (preparedSize < 0) ? 2 * maxArea : preparedSize;
+		if (size == 0 || !singleColor) return;
+
+		int key = size * 4 + mask;
+		if (!tables.containsKey(key)) buildTable(key, mask, size);
+		patterns = tables.get(key);
+		tileClass = classes.get(key);
+		int n = 0;
+		for (int c: tileClass) n = Math.max(n, c + 1);
+		classLeft = new int[n];
+	}
+
+	/**
+	 * Follow the cover of a row.
+	 * @param x - any cell of the row
+	 */
+	public void place(DLXCell x) {
+		DLXCell k = x;
+		do {
+			if (k.col < numTiles) {
+				countByArea[tileArea[k.col]]--;
+				tileUsed[k.col] = true;
+				if (ways != null) removeWays(tileArea[k.col]);
+			} else {
+				covered[k.col - numTiles] = true;
+				cellsLeft--;
+			}
+			k = k.R;
+		} while (k != x);
+		reachValid = false;
+	}
+
+	/**
+	 * Follow the uncover of a row.
+	 * @param x - any cell of the row
+	 */
+	public void remove(DLXCell x) {
+		DLXCell k = x;
+		do {
+			if (k.col < numTiles) {
+				countByArea[tileArea[k.col]]++;
+				tileUsed[k.col] = false;
+				if (ways != null) addWays(tileArea[k.col]);
+			} else {
+				covered[k.col - numTiles] = false;
+				cellsLeft++;
+			}
+			k = k.R;
+		} while (k != x);
+		reachValid = false;
+	}
+
+	/**
+	 * Determine if the rows placed last cut off a region which cannot be
+	 * filled.
+	 * @param solution - the rows of the current partial solution
+	 * @param from - the index of the first row placed last
+	 * @return
+	 */
+	public boolean isDead(DLXTrail solution, int from) {
+		Stats.regionChecks++;
+		if (preparedMask != Config.orientationMask()
+				|| preparedSize != Config.getDeadPatternSize()) prepare();
+		if (ways != null) {
+			Stats.areaChecks++;
+			if (cellsLeft >= ways.length || ways[cellsLeft] == 0) {
+				Stats.areaPruned++;
+				return true;
+			}
+		}
+		if (stamp > Integer.MAX_VALUE - numCells) {
+			Arrays.fill(mark, 0);
+			stamp = 0;
+		}
+		int base = stamp;
+		int cap = Math.min(cellsLeft / 2, CAP * maxArea);
+		int seen = 0;
+		for (int i = from; i < solution.size(); i++) {
+			DLXCell x = solution.get(i);
+			DLXCell k = x;
+			do {
+				if (k.col >= numTiles) {
+					for (int q: nbr[k.col - numTiles]) {
+						if (covered[q] || mark[q] > base) continue;
+						int area = flood(q, base, cap);
+						if (area < 0) continue;
+						seen += area;
+						if (!fillable(area)) {
+							Stats.regionPruned++;
+							return true;
+						}
+						if (patterns != null && area <= patterns.maxSize()
+								&& !patternFillable(area)) {
+							Stats.patternPruned++;
+							return true;
+						}
+						/* Every uncovered cell is in a checked region */
+						if (seen == cellsLeft) return false;
+					}
+				}
+				k = k.R;
+			} while (k != x);
+		}
+		return false;
+	}
+
+	/******************** Private Member Functions ********************/
+
+	/**
+	 * Mark the region of uncovered cells containing c with a new flood id.
+	 * The fill stops when the region is larger than cap or meets an earlier
+	 * flood of this check, which stopped for the same reason.
+	 * @param c
+	 * @param base - the last flood id before this check
+	 * @param cap
+	 * @return the area of the region, -1 if the fill stopped
+	 */
+	private int flood(int c, int base, int cap) {
+		int id = ++stamp;
+		int top = 0, area = 0;
+		mark[c] = id;
+		stack[top++] = c;
+		while (top > 0) {
+			int p = stack[--top];
+			if (area == cap) {
+				Stats.regionCells += area;
+				return -1;
+			}
+			regionR[area] = cellR[p];
+			regionC[area] = cellC[p];
+			area++;
+			for (int q: nbr[p]) {
+				if (covered[q] || mark[q] == id) continue;
+				if (mark[q] > base) {
+					Stats.regionCells += area;
+					return -1;
+				}
+				mark[q] = id;
+				stack[top++] = q;
+			}
+		}
+		Stats.regionCells += area;
+		return area;
+	}
+
+	/**
+	 * Look up the last flooded region in the dead pattern table.
+	 * @param area
+	 * @return
+	 */
+	private boolean patternFillable(int area) {
+		Stats.patternChecks++;
+		Arrays.fill(classLeft, 0);
+		for (int t = 0; t < numTiles; t++) {
+			if (!tileUsed[t]) classLeft[tileClass[t]]++;
+		}
+		return patterns.isFillable(regionR, regionC, area, classLeft);
+	}
+
+	/**
+	 * Build the dead pattern table of an orientation mask and a size. The shapes of a
+	 * tile are read from its rows which are linked under the mask, closed
+	 * under the allowed orientations; tiles with the same shapes form one
+	 * class.
+	 * @param key - the key of the table and classes
+	 * @param mask
+	 * @param size
+	 */
+	private void buildTable(int key, int mask, int size) {
+		int transforms = (mask == DLXBasicExactCoverArray.ORIENT_FLIP) ? 8
+				: (mask == DLXBasicExactCoverArray.ORIENT_SPIN) ? 4 : 1;
+
+		/* Shape keys of each tile */
+		List<TreeSet<String>> keys = new ArrayList<TreeSet<String>>();
+		List<List<int[]>> shapes = new ArrayList<List<int[]>>();
+		for (int t = 0; t < numTiles; t++) {
+			keys.add(new TreeSet<String>());
+			shapes.add(new ArrayList<int[]>());
+		}
+		for (int r = 0; r < DLA.numRows; r++) {
+			if (DLA.orientation(r) > mask) continue;
+			int t = DLA.rowTile(r);
+			int[] cells = DLA.rowCells(r);
+			int[] s = new int[2 * cells.length];
+			for (int i = 0; i < cells.length; i++) {
+				s[2 * i] = cellR[cells[i]];
+				s[2 * i + 1] = cellC[cells[i]];
+			}
+			for (int[] o: DLXPatternTable.orientations(s, transforms)) {
+				if (keys.get(t).add(Arrays.toString(o))) shapes.get(t).add(o);
+			}
+		}
+
+		/* Shape classes */
+		int[] cls = new int[numTiles];
+		List<String> sigs = new ArrayList<String>();
+		List<List<int[]>> classShapes = new ArrayList<List<int[]>>();
+		List<Integer> sizes = new ArrayList<Integer>();
+		for (int t = 0; t < numTiles; t++) {
+			String sig = keys.get(t).toString();
+			int c = sigs.indexOf(sig);
+			if (c < 0) {
+				c = sigs.size();
+				sigs.add(sig);
+				classShapes.add(shapes.get(t));
+				sizes.add(0);
+			}
+			sizes.set(c, sizes.get(c) + 1);
+			cls[t] = c;
+		}
+		int[] classSize = new int[sizes.size()];
+		for (int c = 0; c < classSize.length; c++) classSize[c] = sizes.get(c);
+
+		long t0 = System.nanoTime();
+		DLXPatternTable table = new DLXPatternTable(classShapes, classSize,
+				transforms, size);
+		if (Config.verb) {
+			System.out.println("Dead pattern table: " + table.size()
+					+ " shapes up to " + table.maxSize() + " cells, "
+					+ (System.nanoTime() - t0) / 1000000 + " ms");
+		}
+		tables.put(key, table);
+		classes.put(key, cls);
+	}
+
+	/**
+	 * Determine if an area is a sum of the areas of some unused tiles.
+	 * @param area
+	 * @return
+	 */
+	private boolean fillable(int area) {
+		/* The whole rest of the board is filled by all the unused tiles */
+		if (area == cellsLeft && !Config.isEnableExtra()) return true;
+		if (ways != null) return area < ways.length && ways[area] != 0;
+		if (!reachValid) buildReach();
+		if (gcd == 0) return false;
+		if (area % gcd != 0) return false;
+		if (distinct == 1) return area / gcd <= countByArea[gcd];
+		return (reach[area >> 6] & (1L << (area & 63))) != 0;
+	}
+
+	/**
+	 * Count the subsets with a tile of area a added.
+	 * @param a
+	 */
+	private void addWays(int a) {
+		for (int s = ways.length - 1; s >= a; s--) ways[s] += ways[s - a];
+	}
+
+	/**
+	 * Count the subsets with a tile of area a removed, the inverse of
+	 * addWays().
+	 * @param a
+	 */
+	private void removeWays(int a) {
+		for (int s = a; s < ways.length; s++) ways[s] -= ways[s - a];
+	}
+
+	/**
+	 * Compute the gcd and the subset sums of the unused tile areas, up to
+	 * the number of uncovered cells.
+	 */
+	private void buildReach() {
+		reachValid = true;
+		gcd = 0;
+		distinct = 0;
+		for (int a = 1; a < countByArea.length; a++) {
+			if (countByArea[a] > 0) {
+				gcd = gcd(gcd, a);
+				distinct++;
+			}
+		}
+		if (distinct <= 1) return;
+
+		int words = (cellsLeft >> 6) + 1;
+		Arrays.fill(reach, 0, words, 0);
+		reach[0] = 1;
+		for (int a = 1; a < countByArea.length; a++) {
+			/* Bounded multiplicity by binary splitting: 1, 2, 4, ... tiles */
+			int n = countByArea[a];
+			for (int m = 1; n > 0; m <<= 1) {
+				int take = Math.min(m, n);
+				shiftOr(words, a * take);
+				n -= take;
+			}
+		}
+	}
+
+	/**
+	 * reach |= reach << s, within words.
+	 */
+	private void shiftOr(int words, int s) {
+		int ws = s >> 6, bs = s & 63;
+		for (int i = words - 1; i >= ws; i--) {
+			long v = reach[i - ws] << bs;
+			if (bs != 0 && i - ws - 1 >= 0) v |= reach[i - ws - 1] >>> (64 - bs);
+			reach[i] |= v;
+		}
+	}
+
+	private static int gcd(int a, int b) {
+		while (b != 0) {
+			int t = a % b;
+			a = b;
+			b = t;
+		}
+		return a;
+	}
+
+}
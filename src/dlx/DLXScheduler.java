@@ -0,0 +1,364 @@
+package dlx;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * DLX Multi-job Scheduler
+ *
+ * Keeps many active searches and runs each of them for a quantum of search
+ * nodes at a time on a fixed number of worker threads. The searches can be
+ * paused and resumed between any two nodes since their trails live on the
+ * heap.
+ *
+ * Jobs are picked by stride scheduling: every job has a pass value which
+ * grows by STRIDE / priority with each quantum it runs, and the job with the
+ * smallest pass runs next. A job with priority p therefore gets p times the
+ * quanta of a priority 1 job, and a new job starts at the current smallest
+ * pass, so short jobs finish quickly next to long enumerations.
+ *
+ * @author Deyuan Guo, Dawei Fan
+ */
+public class DLXScheduler {
+
+	/******************** Public Member Variables ********************/
+
+	/** The default number of search nodes per quantum */
+	public static final long DEFAULT_QUANTUM = 20000;
+
+	/** The highest priority; higher ones are lowered to it, so every job
+	 *  keeps a pass increment of at least STRIDE / MAX_PRIORITY */
+	public static final int MAX_PRIORITY = 1 << 10;
+
+	/**
+	 * Callbacks of a job. They run on a worker thread.
+	 */
+	public interface Listener {
+		/** A new solution is found */
+		void solution(Job job, List<List<Integer>> solution);
+		/** The job is finished, cancelled or failed */
+		void finished(Job job);
+	}
+
+	/**
+	 * A scheduled search.
+	 */
+	public static class Job {
+		private final long id;
+		private final DLX dlx;
+		private final int priority;
+		private final Listener listener;
+
+		/** Scheduling pass, guarded by the scheduler */
+		private long pass = 0;
+
+		/** Set once preProcess() has been called */
+		private volatile boolean started = false;
+
+		private volatile boolean cancelled = false;
+		private volatile boolean finished = false;
+		private volatile Throwable error = null;
+
+		/** Statistics, written by the worker running the job */
+		private volatile long solutions = 0;
+		private volatile long quanta = 0;
+		private volatile long cpuNanos = 0;
+		private volatile long wallNanos = 0;
+
+		private Job(long id, DLX dlx, int priority, Listener listener) {
+			this.id = id;
+			this.dlx = dlx;
+			this.priority = priority;
+			this.listener = listener;
+		}
+
+		public long getId() { return id; }
+		public DLX getDLX() { return dlx; }
+		public int getPriority() { return priority; }
+		public boolean isCancelled() { return cancelled; }
+		public boolean isFinished() { return finished; }
+		public Throwable getError() { return error; }
+		public long getSolutions() { return solutions; }
+		public long getQuanta() { return quanta; }
+		public long getNodes() { return started ? dlx.getNodes() : 0; }
+
+		/** CPU time of the worker threads spent on this job, -1 if the JVM
+		 * does not measure thread CPU time */
+		public long getCpuNanos() { return cpuNanos; }
+
+		/** Wall time spent running quanta of this job */
+		public long getWallNanos() { return wallNanos; }
+
+		/**
+		 * Cancel the job. It stops within one quantum.
+		 */
+		public void cancel() {
+			cancelled = true;
+			if (started) dlx.cancel();
+		}
+
+		/**
+		 * Wait until the job is finished.
+		 * @throws InterruptedException
+		 */
+		public synchronized void await() throws InterruptedException {
+			while (!finished) wait();
+		}
+
+		private synchronized void setFinished() {
+			finished = true;
+			notifyAll();
+		}
+
+		@Override
+		public String toString() {
+			return "Job " + id + " (priority " + priority + "): "
+					+ solutions + " solutions, " + getNodes() + " nodes, "
+					+ quanta + " quanta, cpu " + cpuNanos / 1000000 + " ms";
+		}
+	}
+
+	/******************** Private Member Variables ********************/
+
+	/** The pass increment of a priority 1 job */
+	private static final long STRIDE = 1 << 20;
+
+	private final long quantum;
+	private final PriorityQueue<Job> ready;
+	private final List<Thread> workers = new ArrayList<Thread>();
+	private final AtomicLong nextId = new AtomicLong(1);
+	private final ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+	private final boolean cpuTime;
+
+	/** The pass of the last job taken, new jobs start from here */
+	private long globalPass = 0;
+
+	/** The number of jobs not finished yet, queued or running */
+	private int active = 0;
+
+	private boolean shutdown = false;
+
+	/******************** Public Member Functions ********************/
+
+	/**
+	 * Constructor of DLXScheduler
+	 * @param threads - the number of workers
+	 * @param quantum - the number of search nodes per time slice
+	 */
+	public DLXScheduler(int threads, long quantum) {
+		this.quantum = quantum;
+		ready = new PriorityQueue<Job>(16, new Comparator<Job>() {
+			@Override
+			public int compare(Job a, Job b) {
+				if (a.pass != b.pass) return a.pass < b.pass ? -1 : 1;
+				return a.id < b.id ? -1 : (a.id > b.id ? 1 : 0);
+			}
+		});
+		cpuTime = mx.isCurrentThreadCpuTimeSupported();
+		if (cpuTime && !mx.isThreadCpuTimeEnabled()) {
+			mx.setThreadCpuTimeEnabled(true);
+		}
+		for (int i = 0; i < threads; i++) {
+			Thread t = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					work();
+				}
+			}, "dlx-scheduler-" + i);
+			t.setDaemon(true);
+			workers.add(t);
+			t.start();
+		}
+	}
+
+	/**
+	 * Submit a configured DLX instance. preProcess() is called by the
+	 * scheduler in the first quantum of the job. The instance does not keep
+	 * its solutions; they are only passed to the listener.
+	 * @param dlx
+	 * @param priority - at least 1, higher runs more often, at most
+	 * MAX_PRIORITY
+	 * @param listener - may be null
+	 * @return the job
+	 */
+	public Job submit(DLX dlx, int priority, Listener listener) {
+		if (priority < 1)
+			throw new IllegalArgumentException("priority must be >= 1");
+		dlx.setKeepSolutions(false);
+		Job job = new Job(nextId.getAndIncrement(), dlx,
+				Math.min(priority, MAX_PRIORITY), listener);
+		synchronized (this) {
+			if (shutdown) throw new IllegalStateException("scheduler is shut down");
+			job.pass = globalPass;
+			ready.add(job);
+			active++;
+			notifyAll();
+		}
+		return job;
+	}
+
+	/**
+	 * Return the number of jobs which are not finished.
+	 * @return
+	 */
+	public synchronized int activeJobs() {
+		return active;
+	}
+
+	/**
+	 * Wait until all submitted jobs are finished.
+	 * @throws InterruptedException
+	 */
+	public synchronized void awaitIdle() throws InterruptedException {
+		while (active > 0) wait();
+	}
+
+	/**
+	 * Stop the workers. Jobs which are not finished are cancelled and
+	 * finished: the queued jobs here, the running ones after their quantum.
+	 */
+	public void shutdown() {
+		List<Job> queued;
+		synchronized (this) {
+			shutdown = true;
+			queued = new ArrayList<Job>(ready);
+			ready.clear();
+			active -= queued.size();
+			notifyAll();
+		}
+		for (Job j: queued) {
+			j.cancel();
+			finish(j);
+		}
+		for (Thread t: workers) t.interrupt();
+	}
+
+	/******************** Private Member Functions ********************/
+
+	/**
+	 * Worker loop: take the job with the smallest pass, run one quantum,
+	 * put it back.
+	 */
+	private void work() {
+		while (true) {
+			Job job;
+			synchronized (this) {
+				while (ready.isEmpty() && !shutdown) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						if (shutdown) return;
+					}
+				}
+				if (shutdown) return;
+				job = ready.poll();
+				globalPass = job.pass;
+			}
+
+			boolean done = runQuantum(job);
+
+			synchronized (this) {
+				if (!done && shutdown) {
+					job.cancel();
+					done = true;
+				}
+				if (done) {
+					active--;
+					notifyAll();
+				} else {
+					job.pass += STRIDE / job.priority;
+					ready.add(job);
+					notifyAll();
+				}
+			}
+			if (done) finish(job);
+		}
+	}
+
+	/**
+	 * Mark a job finished and call its listener.
+	 * @param job
+	 */
+	private void finish(Job job) {
+		job.setFinished();
+		if (job.listener != null) job.listener.finished(job);
+	}
+
+	/**
+	 * Run one quantum of a job.
+	 * @param job
+	 * @return true if the job is finished
+	 */
+	private boolean runQuantum(Job job) {
+		long cpu0 = cpuTime ? mx.getCurrentThreadCpuTime() : 0;
+		long wall0 = System.nanoTime();
+		if (job.cancelled && !job.started) return true;
+		boolean done;
+		try {
+			if (!job.started) {
+				job.dlx.preProcess();
+				job.started = true;
+				if (job.cancelled) job.dlx.cancel();
+			}
+			long end = job.dlx.getNodes() + quantum;
+			/* Several solutions may be found within one quantum */
+			while (!job.dlx.isSearchFinished() && job.dlx.getNodes() < end) {
+				List<List<Integer>> sol =
+						job.dlx.nextSolution(end - job.dlx.getNodes());
+				if (sol != null) {
+					job.solutions++;
+					if (job.listener != null) job.listener.solution(job, sol);
+				}
+			}
+			done = job.dlx.isSearchFinished() || job.cancelled;
+		} catch (RuntimeException e) {
+			job.error = e;
+			done = true;
+		}
+		job.quanta++;
+		job.wallNanos += System.nanoTime() - wall0;
+		job.cpuNanos = cpuTime
+				? job.cpuNanos + mx.getCurrentThreadCpuTime() - cpu0 : -1;
+		return done;
+	}
+
+	/**
+	 * Demo: one long enumeration at priority 1 next to short jobs at
+	 * priority 8.
+	 * @param args - long puzzle file, short puzzle file
+	 * @throws InterruptedException
+	 */
+	public static void main(String args[]) throws InterruptedException {
+		String big = args.length > 0 ? args[0] : "testcases/pentominoes6x10.txt";
+		String small = args.length > 1 ? args[1] : "testcases/pentominoes3x20.txt";
+		DLXScheduler s = new DLXScheduler(
+				Runtime.getRuntime().availableProcessors(), DEFAULT_QUANTUM);
+
+		DLX d = new DLX(big);
+		d.Config.setEnableSpinFlip(true);
+		d.Config.setEliminateSymmetry(false);
+		Job longJob = s.submit(d, 1, null);
+
+		DLXPuzzle p = DLXPuzzle.fromFile(small);
+		for (int i = 0; i < 5; i++) {
+			DLX x = new DLX(p);
+			x.Config.setEnableSpin(true);
+			x.Config.setEnableSpinFlip(true);
+			long t0 = System.nanoTime();
+			Job j = s.submit(x, 8, null);
+			j.await();
+			System.out.println(j + ", latency "
+					+ (System.nanoTime() - t0) / 1000000 + " ms");
+		}
+		longJob.cancel();
+		longJob.await();
+		System.out.println(longJob);
+		s.shutdown();
+	}
+
+}
@@ -0,0 +1,85 @@
+package dlx;
+
+/**
+ * DLX Search State
+ *
+ * The mutable flags of one running search. Every DLXBasicSearch owns its
+ * state, so searches on different threads never share these flags.
+ *
+ * @author Deyuan Guo, Dawei Fan
+ */
+public class DLXSearchState {
+
+	/******************** Private Member Variables ********************/
+
+	/** Search Finished */
+	private boolean searchFinished = false;
+
+	/** Single step search */
+	private boolean singleStepSearch = false;
+
+	/** Single solution search */
+	private boolean singleSolutionSearch = false;
+
+	/** True if use leader tile to eliminate symmetry */
+	private boolean symmetryEliminatedByLeader = false;
+
+	/** The number of rows tried so far (search nodes) */
+	private long nodes = 0;
+
+	/** The search pauses when nodes reaches this limit */
+	private long nodeLimit = Long.MAX_VALUE;
+
+	/** Set by another thread to stop the search */
+	private volatile boolean cancelled = false;
+
+	/******************** Public Member Functions ********************/
+
+	/**
+	 * Reset the state before every new search.
+	 */
+	public void reset() {
+		searchFinished = false;
+		singleStepSearch = false;
+		singleSolutionSearch = false;
+		symmetryEliminatedByLeader = false;
+		cancelled = false;
+		nodes = 0;
+		nodeLimit = Long.MAX_VALUE;
+	}
+
+	public boolean searchFinished() { return searchFinished; }
+	public void setSearchFinished(boolean b) { searchFinished = b; }
+
+	public boolean singleStepSearch() { return singleStepSearch; }
+	public void setSingleStepSearch(boolean b) { singleStepSearch = b; }
+
+	public boolean singleSolutionSearch() { return singleSolutionSearch; }
+	public void setSingleSolutionSearch(boolean b) { singleSolutionSearch = b; }
+
+	public boolean symmetryEliminatedByLeader() { return symmetryEliminatedByLeader; }
+	public void setSymmetryEliminatedByLeader(boolean b) { symmetryEliminatedByLeader = b; }
+
+	public long nodes() { return nodes; }
+	public void countNode() { nodes++; }
+	public void countNodes(long n) { nodes += n; }
+
+	public long nodeLimit() { return nodeLimit; }
+	public void setNodeLimit(long n) { nodeLimit = n; }
+
+	public boolean cancelled() { return cancelled; }
+	public void setCancelled(boolean b) { cancelled = b; }
+
+	public void print() {
+		System.out.println("DLXSearchState Class:");
+		System.out.println("Search finished = " + searchFinished);
+		System.out.println("Single step search = " + singleStepSearch);
+		System.out.println("Single solution search = " + singleSolutionSearch);
+		System.out.println("Symmetry eliminated by leader = "
+				+ symmetryEliminatedByLeader);
+		System.out.println("Nodes = " + nodes);
+		System.out.println("Cancelled = " + cancelled);
+		System.out.println();
+	}
+
+}
@@ -0,0 +1,128 @@
+package dlx;
+
+/**
+ * DLX Search Statistics
+ *
+ * Counters of the pruning steps of one search, next to the node count of
+ * DLXSearchState. They are only read for reports and benchmarks.
+ *
+ * @author Deyuan Guo, Dawei Fan
+ */
+public class DLXSearchStats {
+
+	/******************** Public Member Variables ********************/
+
+	/** Rows placed by forced-move propagation, without a search node */
+	public long forced = 0;
+
+	/** Propagation chains which ended in an empty column or a duplicated
+	 *  tile used out of order */
+	public long forcedFailures = 0;
+
+	/** Candidate rows checked by the lookahead */
+	public long lookaheadChecks = 0;
+
+	/** Candidate rows dropped by the lookahead, i.e. search nodes saved */
+	public long lookaheadPruned = 0;
+
+	/** Cells read by the lookahead, its cost next to a cover/uncover */
+	public long lookaheadCells = 0;
+
+	/** Region checks after a placement */
+	public long regionChecks = 0;
+
+	/** Placements failed because a cut off region cannot be filled */
+	public long regionPruned = 0;
+
+	/** Cells visited by the region flood fills */
+	public long regionCells = 0;
+
+	/** Checks of the uncovered area against the subset sums of the unused
+	 *  tile areas, with extra tiles */
+	public long areaChecks = 0;
+
+	/** Placements failed because no subset of the unused tiles has the
+	 *  uncovered area */
+	public long areaPruned = 0;
+
+	/** Small regions looked up in the dead pattern table */
+	public long patternChecks = 0;
+
+	/** Placements failed by the dead pattern table */
+	public long patternPruned = 0;
+
+	/** Coloring invariant checks after a placement */
+	public long coloringChecks = 0;
+
+	/** Placements failed by a coloring invariant */
+	public long coloringPruned = 0;
+
+	/** Transposition table lookups, hits, stores and evictions */
+	public long ttProbes = 0;
+	public long ttHits = 0;
+	public long ttStores = 0;
+	public long ttEvictions = 0;
+
+	/******************** Public Member Functions ********************/
+
+	/**
+	 * Reset all counters.
+	 */
+	public void reset() {
+		forced = 0;
+		forcedFailures = 0;
+		lookaheadChecks = 0;
+		lookaheadPruned = 0;
+		lookaheadCells = 0;
+		regionChecks = 0;
+		regionPruned = 0;
+		regionCells = 0;
+		areaChecks = 0;
+		areaPruned = 0;
+		patternChecks = 0;
+		patternPruned = 0;
+		coloringChecks = 0;
+		coloringPruned = 0;
+		ttProbes = 0;
+		ttHits = 0;
+		ttStores = 0;
+		ttEvictions = 0;
+	}
+
+	public void print() {
+		System.out.println("DLXSearchStats Class:");
+		System.out.println("Forced placements = " + forced);
+		System.out.println("Forced failures = " + forcedFailures);
+		if (lookaheadChecks > 0) {
+			System.out.println("Lookahead checks = " + lookaheadChecks);
+			System.out.println("Lookahead pruned = " + lookaheadPruned);
+			System.out.println("Lookahead cells = " + lookaheadCells + " ("
+					+ (lookaheadPruned > 0 ? lookaheadCells / lookaheadPruned : 0)
+					+ " per pruned row)");
+		}
+		if (regionChecks > 0) {
+			System.out.println("Region checks = " + regionChecks);
+			System.out.println("Region pruned = " + regionPruned);
+			System.out.println("Region cells = " + regionCells);
+			if (areaChecks > 0) {
+				System.out.println("Area checks = " + areaChecks);
+				System.out.println("Area pruned = " + areaPruned);
+			}
+			System.out.println("Pattern checks = " + patternChecks);
+			System.out.println("Pattern pruned = " + patternPruned);
+		}
+		if (coloringChecks > 0) {
+			System.out.println("Coloring checks = " + coloringChecks);
+			System.out.println("Coloring pruned = " + coloringPruned);
+		}
+		if (ttProbes > 0) {
+			System.out.println("Transposition probes = " + ttProbes);
+			System.out.println("Transposition hits = " + ttHits + " ("
+					+ 100 * ttHits / ttProbes + "%)");
+			System.out.println("Transposition stores = " + ttStores);
+			System.out.println("Transposition evictions = " + ttEvictions);
+		}
+		System.out.println();
+	}
+
+}
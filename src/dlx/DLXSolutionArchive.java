@@ -0,0 +1,486 @@
+package dlx;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * DLX Solution Archive
+ *
+ * A compact file of solutions given as placement row ids. Each solution is
+ * stored relative to the one before it, like a path in a trie: the number
+ * of rows dropped from the end of the previous solution, the number of new
+ * rows, and the new rows, all as varints. Solutions emitted back to back by
+ * the search share the rows of their common trail prefix, so most records
+ * are a few bytes.
+ *
+ * Archives are either in search order (rows in trail order, written as the
+ * search finds them) or canonical (rows of each solution sorted, new rows
+ * delta coded). A canonical archive whose solutions are in lexicographic
+ * order is sorted; diff and intersect merge two sorted archives in one
+ * streaming pass, and sort() turns any archive into a sorted one with an
+ * external merge sort.
+ *
+ * File layout: magic, version, flags, count (long), then the records.
+ *
+ * @author Deyuan Guo, Dawei Fan
+ */
+public class DLXSolutionArchive {
+
+	/******************** Public Member Variables ********************/
+
+	/** Header flags */
+	public static final int CANONICAL = 1;
+	public static final int SORTED = 2;
+
+	/** Solutions per run of the external sort */
+	public static final int DEFAULT_RUN = 1 << 20;
+
+	/**
+	 * Writes an archive. Records are streamed to the file; the flags and the
+	 * count in the header are updated on close().
+	 */
+	public static class Writer implements Closeable {
+		private final File file;
+		private final OutputStream out;
+		private final boolean canonical;
+		private boolean sorted;
+		private int[] prev = new int[0];
+		private long count = 0;
+
+		/**
+		 * Constructor of Writer
+		 * @param f - the file, overwritten
+		 * @param canonical - sort the rows of each solution
+		 * @throws IOException
+		 */
+		public Writer(File f, boolean canonical) throws IOException {
+			file = f;
+			this.canonical = canonical;
+			sorted = canonical;
+			out = new BufferedOutputStream(new FileOutputStream(f), 1 << 16);
+			writeInt(out, MAGIC);
+			writeInt(out, VERSION);
+			writeInt(out, 0);
+			writeInt(out, 0);
+			writeInt(out, 0);
+		}
+
+		/**
+		 * Append a solution.
+		 * @param rows - placement rows, in trail order for search order
+		 * archives
+		 * @throws IOException
+		 */
+		public void append(int[] rows) throws IOException {
+			int[] cur = rows;
+			if (canonical) {
+				cur = rows.clone();
+				Arrays.sort(cur);
+				if (count > 0 && compare(prev, cur) >= 0) sorted = false;
+			}
+			int common = 0;
+			int n = Math.min(prev.length, cur.length);
+			while (common < n && prev[common] == cur[common]) common++;
+
+			writeVarint(out, prev.length - common);
+			writeVarint(out, cur.length - common);
+			int base = (canonical && common > 0) ? cur[common - 1] : 0;
+			for (int i = common; i < cur.length; i++) {
+				if (canonical) {
+					writeVarint(out, cur[i] - base);
+					base = cur[i];
+				} else {
+					writeVarint(out, cur[i]);
+				}
+			}
+			prev = cur;
+			count++;
+		}
+
+		public long count() { return count; }
+
+		@Override
+		public void close() throws IOException {
+			out.close();
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			try {
+				raf.seek(8);
+				raf.writeInt((canonical ? CANONICAL : 0) | (sorted ? SORTED : 0));
+				raf.writeLong(count);
+			} finally {
+				raf.close();
+			}
+		}
+	}
+
+	/**
+	 * Streams the solutions of an archive.
+	 */
+	public static class Reader implements Closeable {
+		private final DataInputStream in;
+		private final int flags;
+		private final long count;
+		private int[] prev = new int[0];
+		private long read = 0;
+
+		/**
+		 * Constructor of Reader
+		 * @param f
+		 * @throws IOException
+		 */
+		public Reader(File f) throws IOException {
+			in = new DataInputStream(new BufferedInputStream(
+					new FileInputStream(f), 1 << 16));
+			try {
+				if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+					throw new IOException("Not a solution archive: " + f);
+				}
+				flags = in.readInt();
+				count = in.readLong();
+			} catch (IOException e) {
+				in.close();
+				throw e;
+			}
+		}
+
+		public boolean isCanonical() { return (flags & CANONICAL) != 0; }
+		public boolean isSorted() { return (flags & SORTED) != 0; }
+		public long count() { return count; }
+
+		/**
+		 * Decode the next solution.
+		 * @return the rows, or null at the end of the archive
+		 * @throws IOException
+		 */
+		public int[] next() throws IOException {
+			if (read == count) return null;
+			int pop = readVarint(in);
+			int add = readVarint(in);
+			int common = prev.length - pop;
+			if (common < 0) throw new IOException("Corrupt archive");
+			int[] cur = Arrays.copyOf(prev, common + add);
+			int base = (isCanonical() && common > 0) ? cur[common - 1] : 0;
+			for (int i = common; i < cur.length; i++) {
+				int v = readVarint(in);
+				if (isCanonical()) {
+					base += v;
+					cur[i] = base;
+				} else {
+					cur[i] = v;
+				}
+			}
+			prev = cur;
+			read++;
+			return cur;
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+
+	/******************** Private Member Variables ********************/
+
+	private static final int MAGIC = 0x444c5841; // "DLXA"
+	private static final int VERSION = 1;
+
+	/** Lexicographic order of row arrays */
+	private static final Comparator<int[]> LEX = new Comparator<int[]>() {
+		@Override
+		public int compare(int[] a, int[] b) {
+			return DLXSolutionArchive.compare(a, b);
+		}
+	};
+
+	/******************** Public Member Functions ********************/
+
+	/**
+	 * Write a sorted canonical archive of the solutions of an archive, with
+	 * duplicates removed. Runs of runSize solutions are sorted in memory and
+	 * merged from temporary files.
+	 * @param in
+	 * @param out
+	 * @param runSize
+	 * @return the number of solutions written
+	 * @throws IOException
+	 */
+	public static long sort(File in, File out, int runSize)
+			throws IOException {
+		List<File> runs = new ArrayList<File>();
+		Reader r = new Reader(in);
+		try {
+			List<int[]> buf = new ArrayList<int[]>();
+			int[] s;
+			while ((s = r.next()) != null) {
+				s = s.clone();
+				Arrays.sort(s);
+				buf.add(s);
+				if (buf.size() >= runSize) {
+					runs.add(writeRun(buf, out));
+					buf.clear();
+				}
+			}
+			if (!buf.isEmpty() || runs.isEmpty()) runs.add(writeRun(buf, out));
+		} finally {
+			r.close();
+		}
+
+		if (runs.size() == 1) {
+			if (!out.delete() && out.exists()) throw new IOException("Cannot replace " + out);
+			if (!runs.get(0).renameTo(out)) throw new IOException("Cannot write " + out);
+			Reader c = new Reader(out);
+			c.close();
+			return c.count();
+		}
+
+		/* k-way merge of the runs */
+		final List<Reader> readers = new ArrayList<Reader>();
+		final List<int[]> heads = new ArrayList<int[]>();
+		PriorityQueue<Integer> pq = new PriorityQueue<Integer>(runs.size(),
+				new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return DLXSolutionArchive.compare(heads.get(a), heads.get(b));
+			}
+		});
+		Writer w = new Writer(out, true);
+		try {
+			for (int i = 0; i < runs.size(); i++) {
+				readers.add(new Reader(runs.get(i)));
+				heads.add(readers.get(i).next());
+				if (heads.get(i) != null) pq.add(i);
+			}
+			int[] last = null;
+			while (!pq.isEmpty()) {
+				int i = pq.poll();
+				int[] s = heads.get(i);
+				if (last == null || compare(last, s) != 0) w.append(s);
+				last = s;
+				heads.set(i, readers.get(i).next());
+				if (heads.get(i) != null) pq.add(i);
+			}
+		} finally {
+			w.close();
+			for (Reader x: readers) x.close();
+			for (File f: runs) f.delete();
+		}
+		return w.count();
+	}
+
+	/**
+	 * Write the solutions of a which are not in b.
+	 * @param a
+	 * @param b
+	 * @param out - a sorted canonical archive
+	 * @return the number of solutions written
+	 * @throws IOException
+	 */
+	public static long diff(File a, File b, File out) throws IOException {
+		return merge(a, b, out, false);
+	}
+
+	/**
+	 * Write the solutions which are both in a and b.
+	 * @param a
+	 * @param b
+	 * @param out - a sorted canonical archive
+	 * @return the number of solutions written
+	 * @throws IOException
+	 */
+	public static long intersect(File a, File b, File out) throws IOException {
+		return merge(a, b, out, true);
+	}
+
+	/**
+	 * Compare two row arrays lexicographically (a prefix is smaller).
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	public static int compare(int[] a, int[] b) {
+		int n = Math.min(a.length, b.length);
+		for (int i = 0; i < n; i++) {
+			if (a[i] != b[i]) return a[i] < b[i] ? -1 : 1;
+		}
+		return a.length - b.length;
+	}
+
+	/******************** Private Member Functions ********************/
+
+	/**
+	 * Merge two archives, sorting them first if needed.
+	 * @param intersect - true for intersection, false for a - b
+	 */
+	private static long merge(File a, File b, File out, boolean intersect)
+			throws IOException {
+		File sa = sortedCopy(a, out);
+		File sb = sortedCopy(b, out);
+		Reader ra = new Reader(sa);
+		Reader rb = new Reader(sb);
+		Writer w = new Writer(out, true);
+		try {
+			int[] x = ra.next();
+			int[] y = rb.next();
+			while (x != null) {
+				int c = (y == null) ? -1 : compare(x, y);
+				if (c < 0) {
+					if (!intersect) w.append(x);
+					x = ra.next();
+				} else if (c > 0) {
+					y = rb.next();
+				} else {
+					if (intersect) w.append(x);
+					x = ra.next();
+					y = rb.next();
+				}
+			}
+		} finally {
+			w.close();
+			ra.close();
+			rb.close();
+			if (sa != a) sa.delete();
+			if (sb != b) sb.delete();
+		}
+		return w.count();
+	}
+
+	/**
+	 * Return the archive itself if it is sorted, otherwise a sorted
+	 * temporary copy next to out.
+	 */
+	private static File sortedCopy(File f, File out) throws IOException {
+		Reader r = new Reader(f);
+		boolean sorted = r.isSorted();
+		r.close();
+		if (sorted) return f;
+		File tmp = File.createTempFile("dlxa", ".sorted",
+				out.getAbsoluteFile().getParentFile());
+		sort(f, tmp, DEFAULT_RUN);
+		return tmp;
+	}
+
+	private static File writeRun(List<int[]> buf, File out) throws IOException {
+		Collections.sort(buf, LEX);
+		File f = File.createTempFile("dlxa", ".run",
+				out.getAbsoluteFile().getParentFile());
+		Writer w = new Writer(f, true);
+		try {
+			int[] last = null;
+			for (int[] s: buf) {
+				if (last == null || compare(last, s) != 0) w.append(s);
+				last = s;
+			}
+		} finally {
+			w.close();
+		}
+		return f;
+	}
+
+	private static void writeInt(OutputStream out, int v) throws IOException {
+		out.write(v >>> 24);
+		out.write(v >>> 16);
+		out.write(v >>> 8);
+		out.write(v);
+	}
+
+	private static void writeVarint(OutputStream out, int v) throws IOException {
+		while ((v & ~0x7f) != 0) {
+			out.write((v & 0x7f) | 0x80);
+			v >>>= 7;
+		}
+		out.write(v);
+	}
+
+	private static int readVarint(InputStream in) throws IOException {
+		int v = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = in.read();
+			if (b < 0) throw new EOFException();
+			v |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) return v;
+		}
+		throw new IOException("Corrupt varint");
+	}
+
+	private static void usage() {
+		System.out.println("Usage: DLXSolutionArchive");
+		System.out.println("  record PUZZLE OUT [-spin] [-flip] [-nosymmetry] [-canonical]");
+		System.out.println("  info ARCHIVE");
+		System.out.println("  dump ARCHIVE [N]");
+		System.out.println("  sort IN OUT");
+		System.out.println("  diff A B OUT");
+		System.out.println("  intersect A B OUT");
+	}
+
+	public static void main(String args[]) throws IOException {
+		if (args.length < 2) {
+			usage();
+			return;
+		}
+		String cmd = args[0];
+		if (cmd.equals("record") && args.length >= 3) {
+			DLX dlx = new DLX(args[1]);
+			boolean canonical = false;
+			for (int i = 3; i < args.length; i++) {
+				if (args[i].equals("-spin")) dlx.Config.setEnableSpin(true);
+				else if (args[i].equals("-flip")) {
+					dlx.Config.setEnableSpin(true);
+					dlx.Config.setEnableSpinFlip(true);
+				}
+				else if (args[i].equals("-nosymmetry")) dlx.Config.setEliminateSymmetry(false);
+				else if (args[i].equals("-canonical")) canonical = true;
+			}
+			dlx.setKeepSolutions(false);
+			dlx.preProcess();
+			Writer w = new Writer(new File(args[2]), canonical);
+			while (dlx.nextSolution() != null) w.append(dlx.lastSolutionRows());
+			w.close();
+			System.out.println(w.count() + " solutions, "
+					+ new File(args[2]).length() + " bytes");
+		} else if (cmd.equals("info")) {
+			Reader r = new Reader(new File(args[1]));
+			System.out.println(r.count() + " solutions, "
+					+ (r.isCanonical() ? "canonical" : "search order")
+					+ (r.isSorted() ? ", sorted" : "") + ", "
+					+ new File(args[1]).length() + " bytes");
+			r.close();
+		} else if (cmd.equals("dump")) {
+			Reader r = new Reader(new File(args[1]));
+			long n = args.length > 2 ? Long.parseLong(args[2]) : Long.MAX_VALUE;
+			int[] s;
+			for (long i = 0; i < n && (s = r.next()) != null; i++) {
+				System.out.println(Arrays.toString(s));
+			}
+			r.close();
+		} else if (cmd.equals("sort") && args.length >= 3) {
+			System.out.println(sort(new File(args[1]), new File(args[2]),
+					DEFAULT_RUN) + " solutions");
+		} else if (cmd.equals("diff") && args.length >= 4) {
+			System.out.println(diff(new File(args[1]), new File(args[2]),
+					new File(args[3])) + " solutions");
+		} else if (cmd.equals("intersect") && args.length >= 4) {
+			System.out.println(intersect(new File(args[1]), new File(args[2]),
+					new File(args[3])) + " solutions");
+		} else {
+			usage();
+		}
+	}
+
+}
@@ -0,0 +1,431 @@
+package dlx;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+import util.Tile;
+
+/**
+ * DLX Solution Store
+ *
+ * An append-only binary file of solutions with fixed-width records, so the
+ * n-th solution is found in O(1) and solutions do not have to be kept on
+ * the heap. A record is either the tile id of every board cell (KIND_CELLS)
+ * or the placement row ids of a solution padded to a fixed width
+ * (KIND_ROWS). Values are stored as value + 1 in 1, 2 or 4 bytes, 0 meaning
+ * none. Records are appended through a FileChannel and read back through
+ * memory-mapped chunks of the file.
+ *
+ * File layout: header (magic, version, kind, element size, record width,
+ * board rows, board cols, record count), the board cell mask (one byte per
+ * board position), then the records.
+ *
+ * @author Deyuan Guo, Dawei Fan
+ */
+public class DLXSolutionStore implements Closeable {
+
+	/******************** Public Member Variables ********************/
+
+	/** Record kinds */
+	public static final int KIND_CELLS = 0;
+	public static final int KIND_ROWS = 1;
+
+	/******************** Private Member Variables ********************/
+
+	private static final int MAGIC = 0x444c5853; // "DLXS"
+	private static final int VERSION = 1;
+
+	/** Header size without the board mask, and the offset of the count */
+	private static final int HEADER = 36;
+	private static final int COUNT_OFFSET = 28;
+
+	/** Bytes per mapped chunk (rounded down to whole records) */
+	private static final long CHUNK = 64L << 20;
+
+	/** Bytes buffered before writing */
+	private static final int WRITE_BUFFER = 1 << 16;
+
+	private RandomAccessFile file = null;
+	private FileChannel channel = null;
+	private boolean writable = false;
+
+	private int kind = KIND_CELLS;
+	private int elemSize = 1;
+	private int width = 0;
+	private int boardRows = 0;
+	private int boardCols = 0;
+	private byte[] mask = null;
+
+	/** Offset of the first record and the size of a record in bytes */
+	private long dataStart = 0;
+	private int recordBytes = 0;
+	private long recordsPerChunk = 0;
+
+	/** Records in the file, and records still in the write buffer */
+	private long written = 0;
+	private ByteBuffer pending = null;
+
+	/** Mapped chunks of the record area, null until used */
+	private List<MappedByteBuffer> chunks = new ArrayList<MappedByteBuffer>();
+
+	/******************** Public Member Functions ********************/
+
+	/**
+	 * Create a store of tile ids per board cell.
+	 * @param f - the file, overwritten
+	 * @param board
+	 * @param numTiles
+	 * @return
+	 * @throws IOException
+	 */
+	public static DLXSolutionStore createCells(File f, Tile board,
+			int numTiles) throws IOException {
+		return new DLXSolutionStore(f, KIND_CELLS, board, board.area,
+				numTiles - 1);
+	}
+
+	/**
+	 * Create a store of placement row ids.
+	 * @param f - the file, overwritten
+	 * @param board
+	 * @param width - the maximum number of placements of a solution
+	 * @param numRows - the number of placement rows
+	 * @return
+	 * @throws IOException
+	 */
+	public static DLXSolutionStore createRows(File f, Tile board, int width,
+			int numRows) throws IOException {
+		return new DLXSolutionStore(f, KIND_ROWS, board, width, numRows - 1);
+	}
+
+	/**
+	 * Open an existing store for reading.
+	 * @param f
+	 * @return
+	 * @throws IOException
+	 */
+	public static DLXSolutionStore open(File f) throws IOException {
+		return new DLXSolutionStore(f);
+	}
+
+	public int kind() { return kind; }
+	public int width() { return width; }
+	public int boardRows() { return boardRows; }
+	public int boardCols() { return boardCols; }
+
+	/**
+	 * Determine if a board position is a board cell.
+	 * @param r
+	 * @param c
+	 * @return
+	 */
+	public boolean isBoardCell(int r, int c) {
+		return mask[r * boardCols + c] != 0;
+	}
+
+	/**
+	 * Return the number of records.
+	 * @return
+	 */
+	public synchronized long size() {
+		return written + (pending != null ? pending.position() / recordBytes : 0);
+	}
+
+	/**
+	 * Append a record of width values, -1 for none.
+	 * @param record
+	 * @throws IOException
+	 */
+	public synchronized void append(int[] record) throws IOException {
+		if (!writable) throw new IOException("Solution store is read only");
+		if (record.length > width)
+			throw new IllegalArgumentException("Record longer than " + width);
+		if (pending.remaining() < recordBytes) writePending();
+		for (int i = 0; i < width; i++) {
+			int v = i < record.length ? record[i] + 1 : 0;
+			if (elemSize == 1) pending.put((byte) v);
+			else if (elemSize == 2) pending.putShort((short) v);
+			else pending.putInt(v);
+		}
+	}
+
+	/**
+	 * Append a solution given as lists of (tile id, cell indices).
+	 * Only for KIND_CELLS.
+	 * @param solution
+	 * @throws IOException
+	 */
+	public void appendSolution(List<List<Integer>> solution)
+			throws IOException {
+		if (kind != KIND_CELLS) throw new IOException("Not a cell store");
+		int[] record = new int[width];
+		for (int i = 0; i < width; i++) record[i] = -1;
+		for (List<Integer> p: solution) {
+			for (int j = 1; j < p.size(); j++) record[p.get(j)] = p.get(0);
+		}
+		append(record);
+	}
+
+	/**
+	 * Return the n-th record, -1 for none.
+	 * @param n
+	 * @return
+	 * @throws IOException
+	 */
+	public synchronized int[] get(long n) throws IOException {
+		if (n < 0 || n >= size())
+			throw new IndexOutOfBoundsException("Record " + n + " of " + size());
+		if (n >= written) writePending();
+
+		int c = (int) (n / recordsPerChunk);
+		MappedByteBuffer buf = chunk(c, n);
+		int pos = (int) ((n - c * recordsPerChunk) * recordBytes);
+		int[] record = new int[width];
+		for (int i = 0; i < width; i++) {
+			int v;
+			if (elemSize == 1) v = buf.get(pos) & 0xff;
+			else if (elemSize == 2) v = buf.getShort(pos) & 0xffff;
+			else v = buf.getInt(pos);
+			record[i] = v - 1;
+			pos += elemSize;
+		}
+		return record;
+	}
+
+	/**
+	 * Return the n-th solution as lists of (tile id, cell indices), ordered
+	 * by tile id. Only for KIND_CELLS.
+	 * @param n
+	 * @return
+	 * @throws IOException
+	 */
+	public List<List<Integer>> getSolution(long n) throws IOException {
+		if (kind != KIND_CELLS) throw new IOException("Not a cell store");
+		int[] record = get(n);
+		int maxTile = -1;
+		for (int t: record) if (t > maxTile) maxTile = t;
+		List<List<Integer>> byTile = new ArrayList<List<Integer>>();
+		for (int t = 0; t <= maxTile; t++) byTile.add(null);
+		for (int i = 0; i < record.length; i++) {
+			int t = record[i];
+			if (t < 0) continue;
+			if (byTile.get(t) == null) {
+				List<Integer> p = new ArrayList<Integer>();
+				p.add(t);
+				byTile.set(t, p);
+			}
+			byTile.get(t).add(i);
+		}
+		List<List<Integer>> sol = new ArrayList<List<Integer>>();
+		for (List<Integer> p: byTile) if (p != null) sol.add(p);
+		return sol;
+	}
+
+	/**
+	 * Return a list view of the solutions of a KIND_CELLS store: add()
+	 * appends, get() reads from the file. IOExceptions are rethrown as
+	 * IllegalStateException.
+	 * @return
+	 */
+	public List<List<List<Integer>>> asList() {
+		return new AbstractList<List<List<Integer>>>() {
+			@Override
+			public List<List<Integer>> get(int i) {
+				try {
+					return getSolution(i);
+				} catch (IOException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+
+			@Override
+			public int size() {
+				return (int) Math.min(Integer.MAX_VALUE, DLXSolutionStore.this.size());
+			}
+
+			@Override
+			public boolean add(List<List<Integer>> s) {
+				try {
+					appendSolution(s);
+				} catch (IOException e) {
+					throw new IllegalStateException(e);
+				}
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * Write buffered records and the record count to the file.
+	 * @throws IOException
+	 */
+	public synchronized void flush() throws IOException {
+		if (writable) writePending();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		flush();
+		chunks.clear();
+		file.close();
+	}
+
+	/******************** Private Member Functions ********************/
+
+	/**
+	 * Constructor for new stores.
+	 */
+	private DLXSolutionStore(File f, int kind, Tile board, int width,
+			int maxValue) throws IOException {
+		this.kind = kind;
+		this.width = width;
+		boardRows = board.data.length;
+		boardCols = board.data[0].length;
+		mask = new byte[boardRows * boardCols];
+		for (int r = 0; r < boardRows; r++)
+			for (int c = 0; c < boardCols; c++)
+				mask[r * boardCols + c] = (byte) (board.data[r][c] != ' ' ? 1 : 0);
+		long max = (long) maxValue + 1;
+		elemSize = max <= 0xff ? 1 : (max <= 0xffff ? 2 : 4);
+		layout();
+
+		file = new RandomAccessFile(f, "rw");
+		file.setLength(0);
+		channel = file.getChannel();
+		writable = true;
+		pending = ByteBuffer.allocate(Math.max(WRITE_BUFFER, recordBytes));
+
+		ByteBuffer h = ByteBuffer.allocate((int) dataStart);
+		h.putInt(MAGIC).putInt(VERSION).putInt(kind).putInt(elemSize)
+				.putInt(width).putInt(boardRows).putInt(boardCols).putLong(0);
+		h.put(mask);
+		h.flip();
+		while (h.hasRemaining()) channel.write(h, h.position());
+	}
+
+	/**
+	 * Constructor for existing stores (read only).
+	 */
+	private DLXSolutionStore(File f) throws IOException {
+		file = new RandomAccessFile(f, "r");
+		channel = file.getChannel();
+		ByteBuffer h = ByteBuffer.allocate(HEADER);
+		while (h.hasRemaining() && channel.read(h, h.position()) > 0);
+		h.flip();
+		if (h.remaining() < HEADER || h.getInt() != MAGIC
+				|| h.getInt() != VERSION) {
+			file.close();
+			throw new IOException("Not a solution store: " + f);
+		}
+		kind = h.getInt();
+		elemSize = h.getInt();
+		width = h.getInt();
+		boardRows = h.getInt();
+		boardCols = h.getInt();
+		written = h.getLong();
+		mask = new byte[boardRows * boardCols];
+		ByteBuffer m = ByteBuffer.wrap(mask);
+		while (m.hasRemaining()
+				&& channel.read(m, HEADER + m.position()) > 0);
+		layout();
+		if (channel.size() < dataStart + written * recordBytes) {
+			file.close();
+			throw new IOException("Truncated solution store: " + f);
+		}
+	}
+
+	private void layout() {
+		dataStart = HEADER + (long) boardRows * boardCols;
+		recordBytes = Math.max(1, width * elemSize);
+		recordsPerChunk = Math.max(1, CHUNK / recordBytes);
+	}
+
+	/**
+	 * Write the buffered records and update the count in the header.
+	 */
+	private void writePending() throws IOException {
+		if (pending.position() == 0) return;
+		long n = pending.position() / recordBytes;
+		pending.flip();
+		long pos = dataStart + written * recordBytes;
+		while (pending.hasRemaining()) {
+			pos += channel.write(pending, pos);
+		}
+		pending.clear();
+		written += n;
+		ByteBuffer c = ByteBuffer.allocate(8);
+		c.putLong(0, written);
+		channel.write(c, COUNT_OFFSET);
+	}
+
+	/**
+	 * Return the mapped chunk c, mapping it again if it does not cover
+	 * record n yet.
+	 */
+	private MappedByteBuffer chunk(int c, long n) throws IOException {
+		while (chunks.size() <= c) chunks.add(null);
+		MappedByteBuffer buf = chunks.get(c);
+		long first = c * recordsPerChunk;
+		if (buf == null || (n - first + 1) * recordBytes > buf.capacity()) {
+			long records = Math.min(recordsPerChunk, written - first);
+			buf = channel.map(FileChannel.MapMode.READ_ONLY,
+					dataStart + first * recordBytes, records * recordBytes);
+			chunks.set(c, buf);
+		}
+		return buf;
+	}
+
+	/**
+	 * Reader utility.
+	 * @param args - store file [first index [count]]
+	 * @throws IOException
+	 */
+	public static void main(String args[]) throws IOException {
+		if (args.length < 1) {
+			System.out.println("Usage: DLXSolutionStore file [index [count]]");
+			return;
+		}
+		DLXSolutionStore s = open(new File(args[0]));
+		System.out.println((s.kind == KIND_CELLS ? "Cells" : "Rows")
+				+ " store, " + s.size() + " solutions, board " + s.boardRows
+				+ "x" + s.boardCols + ", " + s.width + " values of "
+				+ s.elemSize + " bytes per record");
+		if (args.length > 1) {
+			long from = Long.parseLong(args[1]);
+			long count = args.length > 2 ? Long.parseLong(args[2]) : 1;
+			for (long n = from; n < from + count && n < s.size(); n++) {
+				System.out.println("Solution " + n + ":");
+				int[] rec = s.get(n);
+				if (s.kind == KIND_CELLS) {
+					int k = 0;
+					for (int r = 0; r < s.boardRows; r++) {
+						StringBuilder sb = new StringBuilder();
+						for (int c = 0; c < s.boardCols; c++) {
+							String v = ".";
+							if (s.isBoardCell(r, c)) {
+								v = rec[k] < 0 ? "?" : Integer.toString(rec[k]);
+								k++;
+							}
+							sb.append(String.format("%3s", v));
+						}
+						System.out.println(sb);
+					}
+				} else {
+					StringBuilder sb = new StringBuilder();
+					for (int v: rec) if (v >= 0) sb.append(v).append(' ');
+					System.out.println(sb.toString().trim());
+				}
+			}
+		}
+		s.close();
+	}
+
+}
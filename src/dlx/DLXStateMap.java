@@ -0,0 +1,109 @@
+package dlx;
+
+import java.util.Arrays;
+
+/**
+ * DLX State Map
+ *
+ * Counts by state for the dynamic programs of DLXProfileCounter, in two
+ * primitive arrays with linear probing. States are packed into longs which
+ * are never negative, so -1 marks an empty slot. The map grows at half
+ * load.
+ *
+ * @author Deyuan Guo, Dawei Fan
+ */
+public class DLXStateMap {
+
+	/******************** Public Member Variables ********************/
+
+	/** The empty slot */
+	public static final long EMPTY = -1;
+
+	/** The slots; iterate over the keys which are not EMPTY */
+	public long[] keys = null;
+	public long[] counts = null;
+
+	/** The number of states */
+	public int size = 0;
+
+	/******************** Private Member Variables ********************/
+
+	private int mask = 0;
+
+	/******************** Public Member Functions ********************/
+
+	/**
+	 * Constructor of DLXStateMap
+	 * @param capacity - a power of two
+	 */
+	public DLXStateMap(int capacity) {
+		keys = new long[capacity];
+		counts = new long[capacity];
+		Arrays.fill(keys, EMPTY);
+		mask = capacity - 1;
+	}
+
+	/**
+	 * Add to the count of a state.
+	 * @param key
+	 * @param count
+	 */
+	public void add(long key, long count) {
+		int s = slot(key);
+		while (keys[s] != EMPTY) {
+			if (keys[s] == key) {
+				counts[s] += count;
+				return;
+			}
+			s = (s + 1) & mask;
+		}
+		keys[s] = key;
+		counts[s] = count;
+		if (++size * 2 > keys.length) grow();
+	}
+
+	/**
+	 * Return the count of a state.
+	 * @param key
+	 * @return the count, 0 if the state is not stored
+	 */
+	public long get(long key) {
+		int s = slot(key);
+		while (keys[s] != EMPTY) {
+			if (keys[s] == key) return counts[s];
+			s = (s + 1) & mask;
+		}
+		return 0;
+	}
+
+	/**
+	 * Remove all states, keeping the capacity.
+	 */
+	public void clear() {
+		Arrays.fill(keys, EMPTY);
+		size = 0;
+	}
+
+	/******************** Private Member Functions ********************/
+
+	private int slot(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h >>> 32) & mask;
+	}
+
+	private void grow() {
+		long[] k = keys, c = counts;
+		keys = new long[k.length * 2];
+		counts = new long[k.length * 2];
+		Arrays.fill(keys, EMPTY);
+		mask = keys.length - 1;
+		for (int i = 0; i < k.length; i++) {
+			if (k[i] == EMPTY) continue;
+			int s = slot(k[i]);
+			while (keys[s] != EMPTY) s = (s + 1) & mask;
+			keys[s] = k[i];
+			counts[s] = c[i];
+		}
+	}
+
+}
@@ -5,10 +5,26 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * DLX Symmetry Checks
+ *
+ * Compares solution views under the spins and flips of the board. Each
+ * instance works on the board and duplica rings of one configuration.
+ *
+ * @author Deyuan Guo, Dawei Fan
+ */
 public class DLXSymmetry {
 
 	/** Reference to DLXConfig. Used for dealing with duplicated tiles. */
-	public static DLXConfig Config;
+	private DLXConfig Config = null;
+
+	/**
+	 * Constructor of DLXSymmetry
+	 * @param config
+	 */
+	public DLXSymmetry(DLXConfig config) {
+		Config = config;
+	}
 
 	/**
 	 * Determine if two solutions are symmetric
@@ -16,7 +32,7 @@ public class DLXSymmetry {
 	 * @param pattern
 	 * @return
 	 */
-	public static boolean isAsymmetric(int cur[][], int pattern[][]) {
+	public boolean isAsymmetric(int cur[][], int pattern[][]) {
 
 		/* Width == height. At most 8 symmetric patterns.*/
 		if (cur.length == cur[0].length) {
@@ -53,7 +69,7 @@ public class DLXSymmetry {
 	 * @param config
 	 * @return
 	 */
-	public static boolean isAsymmetricList(int cur[][], List<int[][]> pattern) {
+	public boolean isAsymmetricList(int cur[][], List<int[][]> pattern) {
 		for (int i = 0; i < pattern.size(); i++) {
 			if (!isAsymmetric(cur, pattern.get(i))) {
 				if (Config.verb) System.out.println("Symmetric solution.");
@@ -75,7 +91,7 @@ public class DLXSymmetry {
 	 *
 	 * @return result
 	 */
-	private static boolean checkfrotateC0(int data[][], int result[][]) {
+	private boolean checkfrotateC0(int data[][], int result[][]) {
 		// For detecting tile duplication
 		Map<Integer, Integer> map = new HashMap<Integer, Integer>();
 		int w = data.length;
@@ -96,7 +112,7 @@ public class DLXSymmetry {
 	 *
 	 * @return result
 	 */
-	private static boolean checkfrotateC1(int data[][], int result[][]) {
+	private boolean checkfrotateC1(int data[][], int result[][]) {
 		// For detecting tile duplication
 		Map<Integer, Integer> map = new HashMap<Integer, Integer>();
 		int w = data.length;
@@ -117,7 +133,7 @@ public class DLXSymmetry {
 	 *
 	 * @return result
 	 */
-	private static boolean checkfrotateC2(int data[][], int result[][]) {
+	private boolean checkfrotateC2(int data[][], int result[][]) {
 		// For detecting tile duplication
 		Map<Integer, Integer> map = new HashMap<Integer, Integer>();
 		int w = data.length;
@@ -138,7 +154,7 @@ public class DLXSymmetry {
 	 *
 	 * @return result
 	 */
-	private static boolean checkfrotateC3(int data[][], int result[][]) {
+	private boolean checkfrotateC3(int data[][], int result[][]) {
 		// For detecting tile duplication
 		Map<Integer, Integer> map = new HashMap<Integer, Integer>();
 		int w = data.length;
@@ -159,7 +175,7 @@ public class DLXSymmetry {
 	 *
 	 * @return result
 	 */
-	private static boolean checkrotateC0(int data[][], int result[][]) {
+	private boolean checkrotateC0(int data[][], int result[][]) {
 		// For detecting tile duplication
 		Map<Integer, Integer> map = new HashMap<Integer, Integer>();
 		int w = data.length;
@@ -180,7 +196,7 @@ public class DLXSymmetry {
 	 *
 	 * @return result
 	 */
-	private static boolean checkrotateC1(int data[][], int result[][]) {
+	private boolean checkrotateC1(int data[][], int result[][]) {
 		// For detecting tile duplication
 		Map<Integer, Integer> map = new HashMap<Integer, Integer>();
 		int w = data.length;
@@ -201,7 +217,7 @@ public class DLXSymmetry {
 	 *
 	 * @return result
 	 */
-	private static boolean checkrotateC2(int data[][], int result[][]) {
+	private boolean checkrotateC2(int data[][], int result[][]) {
 		// For detecting tile duplication
 		Map<Integer, Integer> map = new HashMap<Integer, Integer>();
 		int w = data.length;
@@ -222,7 +238,7 @@ public class DLXSymmetry {
 	 *
 	 * @return result
 	 */
-	private static boolean checkrotateC3(int data[][], int result[][]) {
+	private boolean checkrotateC3(int data[][], int result[][]) {
 		// For detecting tile duplication
 		Map<Integer, Integer> map = new HashMap<Integer, Integer>();
 		int w = data.length;
@@ -245,7 +261,7 @@ public class DLXSymmetry {
 	 * @param map
 	 * @return
 	 */
-	private static boolean matched(int t1, int t2, Map<Integer, Integer> map) {
+	private boolean matched(int t1, int t2, Map<Integer, Integer> map) {
 		if (t1 >= 0 && Config.eliminateDuplica()) {
 			if (Config.duplica()[t1] == t1) { //unique tile
 				if (t1 != t2) return false;
@@ -280,7 +296,7 @@ public class DLXSymmetry {
 	 * @param solution
 	 * @return
 	 */
-	public static int[][] solutionView(List<List<Integer>> solution) {
+	public int[][] solutionView(List<List<Integer>> solution) {
 		/* Put all the tiles onto a serialized board position. */
 		int[] boardPosition = new int[Config.board.area];
 		for (int i = 0; i < Config.board.area; i++) boardPosition[i] = -1;
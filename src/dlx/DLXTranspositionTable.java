@@ -0,0 +1,114 @@
+package dlx;
+
+/**
+ * DLX Transposition Table
+ *
+ * Solution counts of subproblems by the Zobrist hash of the covered
+ * columns (DLXBasicLinksArray.hash), so a remaining state which is reached
+ * again by another order of placements is counted once. Only counts are
+ * stored, so the table is only used when counting.
+ *
+ * The table has a fixed number of slots, two per bucket. A new entry takes
+ * an empty slot of its bucket, or evicts the entry whose subtree took fewer
+ * search nodes, so the expensive counts stay. Hash collisions of the 64 bit
+ * keys are not detected.
+ *
+ * @author Deyuan Guo, Dawei Fan
+ */
+public class DLXTranspositionTable {
+
+	/******************** Private Member Variables ********************/
+
+	/** Bytes per slot: key, count and work */
+	private static final int SLOT = 20;
+
+	/** The slots, 0 is the empty key */
+	private long[] keys = null;
+	private long[] counts = null;
+	private int[] work = null;
+	private int mask = 0;
+
+	/** Counters */
+	private DLXSearchStats Stats = null;
+
+	/******************** Public Member Functions ********************/
+
+	/**
+	 * Constructor of DLXTranspositionTable
+	 * @param megabytes - the memory limit
+	 * @param stats
+	 */
+	public DLXTranspositionTable(int megabytes, DLXSearchStats stats) {
+		Stats = stats;
+		long slots = Math.max(2, ((long) megabytes << 20) / SLOT);
+		int n = Integer.highestOneBit((int) Math.min(slots, 1 << 30));
+		keys = new long[n];
+		counts = new long[n];
+		work = new int[n];
+		mask = n / 2 - 1;
+	}
+
+	/**
+	 * Look up the count of a state.
+	 * @param key
+	 * @return the count, or -1 if not stored
+	 */
+	public long get(long key) {
+		Stats.ttProbes++;
+		int b = bucket(key);
+		if (keys[b] == key && key != 0) {
+			Stats.ttHits++;
+			return counts[b];
+		}
+		if (keys[b + 1] == key && key != 0) {
+			Stats.ttHits++;
+			return counts[b + 1];
+		}
+		return -1;
+	}
+
+	/**
+	 * Store the count of a state.
+	 * @param key
+	 * @param count
+	 * @param nodes - the search nodes of the subtree
+	 */
+	public void put(long key, long count, long nodes) {
+		if (key == 0) return;
+		int w = (int) Math.min(nodes, Integer.MAX_VALUE);
+		int b = bucket(key);
+		int s;
+		if (keys[b] == 0 || keys[b] == key) s = b;
+		else if (keys[b + 1] == 0 || keys[b + 1] == key) s = b + 1;
+		else {
+			s = (work[b] <= work[b + 1]) ? b : b + 1;
+			if (work[s] > w) return;
+			Stats.ttEvictions++;
+		}
+		Stats.ttStores++;
+		keys[s] = key;
+		counts[s] = count;
+		work[s] = w;
+	}
+
+	/**
+	 * Return the number of slots.
+	 * @return
+	 */
+	public int capacity() {
+		return keys.length;
+	}
+
+	/******************** Private Member Functions ********************/
+
+	/**
+	 * Return the first slot of the bucket of a key.
+	 * @param key
+	 * @return
+	 */
+	private int bucket(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return ((int) (h >>> 32) & mask) << 1;
+	}
+
+}
@@ -9,6 +9,7 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -40,6 +41,7 @@ import javax.swing.event.ChangeListener;
 import util.DataFileParser;
 import util.Tile;
 import dlx.DLX;
+import dlx.DLXSolutionStore;
 
 /**
  * A class to display the result in a GUI. The DisplayResults instance has two
@@ -70,6 +72,13 @@ public class DisplayDLX extends JPanel implements ActionListener {
 	 */
 	private List<List<List<Integer>>> solution;
 
+	/**
+	 * The file store behind the solution list, so big enumerations do not
+	 * fill the heap. Null if the temporary file cannot be created.
+	 */
+	private DLXSolutionStore solutionStore = null;
+	private File solutionFile = null;
+
 	/**
 	 * The board.
 	 */
@@ -210,7 +219,7 @@ public class DisplayDLX extends JPanel implements ActionListener {
 		@Override
 		protected Void doInBackground() {
 
-			solution = new ArrayList<List<List<Integer>>>();
+			solution = newSolutionList();
 
 			/* Disable all useless buttons to prevent incorrect operations. */
 			setConfigPanelComponents(false);
@@ -221,10 +230,9 @@ public class DisplayDLX extends JPanel implements ActionListener {
 
 			setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
 			/*
-			 * Before every new process must reset DLX (DLX.config is also
-			 * reset, DON'T reset enable options)
+			 * Before every new process must reset DLX (the search state is
+			 * also reset, DON'T reset enable options)
 			 */
-			dlx.Config.reset();
 			dlx.preProcess();
 			dlx.resetSearch();
 			cbExtra.setSelected(dlx.Config.isEnableExtra());
@@ -272,7 +280,7 @@ public class DisplayDLX extends JPanel implements ActionListener {
 
 		@Override
 		protected Void doInBackground() {
-			solution = new ArrayList<List<List<Integer>>>();
+			solution = newSolutionList();
 
 			/* Disable all useless buttons to prevent incorrect operations. */
 			setConfigPanelComponents(false);
@@ -284,10 +292,9 @@ public class DisplayDLX extends JPanel implements ActionListener {
 			cleanTiles();
 
 			/*
-			 * Before every new process must reset DLX (DLX.config is also
-			 * reset, DON'T reset enable options)
+			 * Before every new process must reset DLX (the search state is
+			 * also reset, DON'T reset enable options)
 			 */
-			dlx.Config.reset();
 			dlx.preProcess();
 			dlx.resetSearch();
 			cbExtra.setSelected(dlx.Config.isEnableExtra());
@@ -345,7 +352,7 @@ public class DisplayDLX extends JPanel implements ActionListener {
 
 		@Override
 		protected Void doInBackground() {
-			solution = new ArrayList<List<List<Integer>>>();
+			solution = newSolutionList();
 
 			setConfigPanelComponents(false);
 			setResultPanelComponents(false);
@@ -356,10 +363,9 @@ public class DisplayDLX extends JPanel implements ActionListener {
 			cleanTiles();
 
 			/*
-			 * Before every new process must reset DLX (DLX.config is also
-			 * reset, DON'T reset enable options)
+			 * Before every new process must reset DLX (the search state is
+			 * also reset, DON'T reset enable options)
 			 */
-			dlx.Config.reset();
 			dlx.preProcess();
 			dlx.resetSearch();
 			cbExtra.setSelected(dlx.Config.isEnableExtra());
@@ -420,6 +426,8 @@ public class DisplayDLX extends JPanel implements ActionListener {
 				tResultInfo.setText("Has Unreachable Positions");
 			else if (dlx.Config.tileAreaNotEnough())
 				tResultInfo.setText("Insufficient Tiles");
+			else if (dlx.Config.hasColoringImbalance())
+				tResultInfo.setText("Coloring Imbalance");
 			else
 				tResultInfo.setText("No Solution");
 			sNumSolution.setMinimum(0);
@@ -1452,6 +1460,7 @@ public class DisplayDLX extends JPanel implements ActionListener {
 
 			/* Initiate a new DLX Solver and set it. */
 			DLX dlx = new DLX(board, tileList);
+			dlx.setKeepSolutions(false);
 			this.dlx = dlx;
 
 			/* enable control panel components. */
@@ -1471,6 +1480,30 @@ public class DisplayDLX extends JPanel implements ActionListener {
 		}
 	}
 
+	/**
+	 * Start a new, empty solution list. The solutions are kept in a
+	 * temporary DLXSolutionStore file; the list of the previous run is
+	 * dropped.
+	 * @return
+	 */
+	private List<List<List<Integer>>> newSolutionList() {
+		try {
+			if (solutionStore != null) solutionStore.close();
+			if (solutionFile == null) {
+				solutionFile = File.createTempFile("dlx", ".sol");
+				solutionFile.deleteOnExit();
+			}
+			solutionStore = DLXSolutionStore.createCells(solutionFile,
+					dlx.Config.board, dlx.Config.tiles.size());
+			return solutionStore.asList();
+		} catch (IOException e) {
+			System.out.println("Cannot create solution store: "
+					+ e.getMessage());
+			solutionStore = null;
+			return new ArrayList<List<List<Integer>>>();
+		}
+	}
+
 	/**
 	 * Create and show the GUI.
 	 */
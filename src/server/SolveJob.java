@@ -0,0 +1,230 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import dlx.DLX;
+import dlx.DLXPuzzle;
+
+/**
+ * A solve job of the SolveServer.
+ *
+ * The job solves one puzzle text with its own DLX instance and keeps the
+ * first MAX_KEPT solutions found, so that clients can poll the status or
+ * stream the solutions while the search is running; the DLX instance keeps
+ * none. A count job without a limit is counted by DLX.countSolutions(). A
+ * job can be cancelled at any time, also while it is still waiting in the
+ * queue.
+ *
+ * @author Deyuan Guo, Dawei Fan
+ */
+public class SolveJob implements Runnable {
+
+	/******************** Public Member Variables ********************/
+
+	/** The most solutions a job keeps for streaming; the search goes on
+	 *  counting after that, and the stream ends */
+	public static final int MAX_KEPT = 10000;
+
+	/** Job states */
+	public static final String QUEUED = "queued";
+	public static final String RUNNING = "running";
+	public static final String DONE = "done";
+	public static final String CANCELLED = "cancelled";
+	public static final String FAILED = "failed";
+
+	/** The job id */
+	public final String id;
+
+	/******************** Private Member Variables ********************/
+
+	private final String puzzleText;
+	private final boolean spin;
+	private final boolean flip;
+	private final boolean symmetry;
+
+	/** Keep the solutions for streaming, or only count them */
+	private final boolean keepSolutions;
+
+	/** Stop after this many solutions, 0 for all */
+	private final long limit;
+
+	private String state = QUEUED;
+	private String error = null;
+	private long count = 0;
+	private List<List<List<Integer>>> solutions =
+			new ArrayList<List<List<Integer>>>();
+	private long submitted = System.nanoTime();
+	private long started = 0;
+	private long finished = 0;
+
+	/** Set by cancel(), checked before and during the search */
+	private volatile boolean cancelled = false;
+
+	/** The running DLX instance, null before the search starts */
+	private volatile DLX dlx = null;
+
+	/******************** Public Member Functions ********************/
+
+	/**
+	 * Constructor of SolveJob
+	 * @param id
+	 * @param puzzleText
+	 * @param spin
+	 * @param flip
+	 * @param symmetry - eliminate symmetric solutions
+	 * @param keepSolutions
+	 * @param limit - 0 for all solutions
+	 */
+	public SolveJob(String id, String puzzleText, boolean spin, boolean flip,
+			boolean symmetry, boolean keepSolutions, long limit) {
+		this.id = id;
+		this.puzzleText = puzzleText;
+		this.spin = spin;
+		this.flip = flip;
+		this.symmetry = symmetry;
+		this.keepSolutions = keepSolutions;
+		this.limit = limit;
+	}
+
+	@Override
+	public void run() {
+		synchronized (this) {
+			if (cancelled) return;
+			state = RUNNING;
+			started = System.nanoTime();
+		}
+		try {
+			DLX d = new DLX(DLXPuzzle.fromText(puzzleText));
+			d.Config.setEnableSpin(spin || flip);
+			d.Config.setEnableSpinFlip(flip);
+			d.Config.setEliminateSymmetry(symmetry);
+			/* Only this job holds on to the solutions */
+			d.setKeepSolutions(false);
+			d.preProcess();
+			dlx = d;
+			if (cancelled) d.cancel();
+
+			if (!keepSolutions && limit == 0) {
+				long n = d.countSolutions();
+				synchronized (this) {
+					count = n;
+				}
+			} else {
+				List<List<Integer>> sol;
+				while ((limit == 0 || count < limit)
+						&& (sol = d.nextSolution()) != null) {
+					synchronized (this) {
+						count++;
+						if (keepSolutions && solutions.size() < MAX_KEPT) {
+							solutions.add(sol);
+							notifyAll();
+						}
+					}
+				}
+			}
+			finish(cancelled ? CANCELLED : DONE, null);
+		} catch (RuntimeException e) {
+			finish(FAILED, String.valueOf(e.getMessage()));
+		}
+	}
+
+	/**
+	 * Cancel the job. A queued job never starts, a running search stops at
+	 * its next step.
+	 */
+	public void cancel() {
+		cancelled = true;
+		DLX d = dlx;
+		if (d != null) d.cancel();
+		synchronized (this) {
+			if (state == QUEUED) finish(CANCELLED, null);
+		}
+	}
+
+	/**
+	 * Determine if the job will not change any more.
+	 * @return
+	 */
+	public synchronized boolean isFinished() {
+		return state == DONE || state == CANCELLED || state == FAILED;
+	}
+
+	/**
+	 * Return the number of solutions the job keeps for streaming.
+	 * @return
+	 */
+	public synchronized int keptSolutions() {
+		return solutions.size();
+	}
+
+	/**
+	 * Wait until the solution with index i exists or the job is finished.
+	 * @param i
+	 * @return the solution, or null if the job finished without it or
+	 * i >= MAX_KEPT
+	 * @throws InterruptedException
+	 */
+	public synchronized List<List<Integer>> awaitSolution(int i)
+			throws InterruptedException {
+		while (i >= solutions.size() && i < MAX_KEPT && !isFinished()) wait();
+		return i < solutions.size() ? solutions.get(i) : null;
+	}
+
+	/**
+	 * Return the status of the job as a JSON object.
+	 * @return
+	 */
+	public synchronized String toJson() {
+		long now = System.nanoTime();
+		long waitEnd = started != 0 ? started : (finished != 0 ? finished : now);
+		long runEnd = finished != 0 ? finished : now;
+		StringBuilder sb = new StringBuilder();
+		sb.append("{\"id\":\"").append(id).append('"');
+		sb.append(",\"state\":\"").append(state).append('"');
+		sb.append(",\"solutions\":").append(count);
+		sb.append(",\"queueMillis\":").append((waitEnd - submitted) / 1000000);
+		sb.append(",\"runMillis\":")
+				.append(started != 0 ? (runEnd - started) / 1000000 : 0);
+		if (error != null) {
+			sb.append(",\"error\":\"").append(escape(error)).append('"');
+		}
+		sb.append('}');
+		return sb.toString();
+	}
+
+	/**
+	 * Convert a solution to a JSON array of [tile, cells...] arrays.
+	 * @param sol
+	 * @return
+	 */
+	public static String solutionToJson(List<List<Integer>> sol) {
+		StringBuilder sb = new StringBuilder("[");
+		for (int i = 0; i < sol.size(); i++) {
+			if (i > 0) sb.append(',');
+			sb.append('[');
+			List<Integer> row = sol.get(i);
+			for (int j = 0; j < row.size(); j++) {
+				if (j > 0) sb.append(',');
+				sb.append(row.get(j));
+			}
+			sb.append(']');
+		}
+		return sb.append(']').toString();
+	}
+
+	/******************** Private Member Functions ********************/
+
+	private synchronized void finish(String s, String e) {
+		state = s;
+		error = e;
+		finished = System.nanoTime();
+		notifyAll();
+	}
+
+	private static String escape(String s) {
+		return s.replace("\\", "\\\\").replace("\"", "\\\"")
+				.replace("\n", "\\n").replace("\r", "\\r");
+	}
+
+}
@@ -0,0 +1,374 @@
+package server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local HTTP Solve Service
+ *
+ * Solves puzzles posted as text on a fixed number of worker threads. Jobs
+ * wait in a bounded queue; when the queue is full new jobs are rejected with
+ * 503 at once, so an overloaded server keeps finishing the jobs it accepted
+ * instead of slowing down for everybody. Finished jobs are forgotten oldest
+ * first once there are more than KEEP_FINISHED of them, or once they keep
+ * more than KEEP_SOLUTIONS solutions together.
+ *
+ * Endpoints:
+ *   POST   /jobs?spin=&flip=&symmetry=&mode=count|solutions&limit=
+ *          body: puzzle text; returns 202 and the job status
+ *   GET    /jobs/{id}            job status
+ *   GET    /jobs/{id}/solutions  solutions as chunked JSON lines, streamed
+ *                                while the search runs (mode=solutions)
+ *   DELETE /jobs/{id}            cancel a queued or running job
+ *   GET    /status               server counters
+ *
+ * @author Deyuan Guo, Dawei Fan
+ */
+public class SolveServer {
+
+	/******************** Private Member Variables ********************/
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/** The maximum size of a posted puzzle in bytes */
+	private static final int MAX_PUZZLE = 1 << 20;
+
+	/** The number of finished jobs whose status is kept */
+	private static final int KEEP_FINISHED = 1000;
+
+	/** The number of solutions kept by all finished jobs together */
+	private static final int KEEP_SOLUTIONS = 100000;
+
+	private HttpServer http = null;
+	private ExecutorService httpPool = null;
+	private ThreadPoolExecutor workers = null;
+
+	/** All known jobs in submission order */
+	private final Map<String, SolveJob> jobs =
+			new LinkedHashMap<String, SolveJob>();
+
+	private final AtomicLong nextId = new AtomicLong(1);
+	private final AtomicLong accepted = new AtomicLong();
+	private final AtomicLong rejected = new AtomicLong();
+
+	/******************** Public Member Functions ********************/
+
+	/**
+	 * Constructor of SolveServer
+	 * @param port - 0 for any free port
+	 * @param threads - the number of concurrent searches
+	 * @param queueSize - the number of jobs which may wait for a worker
+	 * @throws IOException
+	 */
+	public SolveServer(int port, int threads, int queueSize)
+			throws IOException {
+		workers = new ThreadPoolExecutor(threads, threads, 0,
+				TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(queueSize),
+				new ThreadPoolExecutor.AbortPolicy());
+
+		/* Requests are short except for solution streams, which mostly wait
+		 * for the workers, so each request gets its own thread. */
+		httpPool = Executors.newCachedThreadPool();
+		http = HttpServer.create(
+				new InetSocketAddress("localhost", port), 0);
+		http.setExecutor(httpPool);
+		http.createContext("/jobs", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange ex) throws IOException {
+				try {
+					handleJobs(ex);
+				} finally {
+					ex.close();
+				}
+			}
+		});
+		http.createContext("/status", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange ex) throws IOException {
+				try {
+					send(ex, 200, statusJson());
+				} finally {
+					ex.close();
+				}
+			}
+		});
+	}
+
+	public void start() { http.start(); }
+
+	/**
+	 * Stop accepting requests and cancel all jobs.
+	 */
+	public void stop() {
+		http.stop(0);
+		synchronized (jobs) {
+			for (SolveJob j: jobs.values()) j.cancel();
+		}
+		workers.shutdownNow();
+		httpPool.shutdownNow();
+	}
+
+	/**
+	 * Return the bound port.
+	 * @return
+	 */
+	public int getPort() {
+		return http.getAddress().getPort();
+	}
+
+	/**
+	 * Submit a job directly.
+	 * @param job
+	 * @return false if the queue is full
+	 */
+	public boolean submit(SolveJob job) {
+		synchronized (jobs) {
+			jobs.put(job.id, job);
+			trimFinished();
+		}
+		try {
+			workers.execute(job);
+		} catch (RejectedExecutionException e) {
+			synchronized (jobs) {
+				jobs.remove(job.id);
+			}
+			rejected.incrementAndGet();
+			return false;
+		}
+		accepted.incrementAndGet();
+		return true;
+	}
+
+	/******************** Private Member Functions ********************/
+
+	private void handleJobs(HttpExchange ex) throws IOException {
+		String method = ex.getRequestMethod();
+		String[] path = ex.getRequestURI().getPath().split("/");
+		/* path = ["", "jobs", id, "solutions"] */
+
+		if (path.length == 2 && method.equals("POST")) {
+			postJob(ex);
+			return;
+		}
+		if (path.length < 3 || path.length > 4) {
+			send(ex, 404, error("not found"));
+			return;
+		}
+
+		SolveJob job;
+		synchronized (jobs) {
+			job = jobs.get(path[2]);
+		}
+		if (job == null) {
+			send(ex, 404, error("no such job"));
+		} else if (path.length == 4 && path[3].equals("solutions")
+				&& method.equals("GET")) {
+			streamSolutions(ex, job);
+		} else if (path.length == 3 && method.equals("GET")) {
+			send(ex, 200, job.toJson());
+		} else if (path.length == 3 && method.equals("DELETE")) {
+			job.cancel();
+			workers.remove(job);
+			send(ex, 200, job.toJson());
+		} else {
+			send(ex, 405, error("method not allowed"));
+		}
+	}
+
+	private void postJob(HttpExchange ex) throws IOException {
+		Map<String, String> q = parseQuery(ex.getRequestURI());
+		String text = readBody(ex.getRequestBody());
+		if (text == null) {
+			send(ex, 413, error("puzzle too large"));
+			return;
+		}
+		if (text.trim().isEmpty()) {
+			send(ex, 400, error("empty puzzle"));
+			return;
+		}
+		String mode = value(q, "mode", "count");
+		if (!mode.equals("count") && !mode.equals("solutions")) {
+			send(ex, 400, error("mode must be count or solutions"));
+			return;
+		}
+		long limit;
+		try {
+			limit = Long.parseLong(value(q, "limit", "0"));
+		} catch (NumberFormatException e) {
+			send(ex, 400, error("bad limit"));
+			return;
+		}
+
+		SolveJob job = new SolveJob(
+				Long.toString(nextId.getAndIncrement()), text,
+				Boolean.parseBoolean(value(q, "spin", "false")),
+				Boolean.parseBoolean(value(q, "flip", "false")),
+				Boolean.parseBoolean(value(q, "symmetry", "true")),
+				mode.equals("solutions"), limit);
+		if (!submit(job)) {
+			ex.getResponseHeaders().set("Retry-After", "1");
+			send(ex, 503, error("queue full"));
+			return;
+		}
+		ex.getResponseHeaders().set("Location", "/jobs/" + job.id);
+		send(ex, 202, job.toJson());
+	}
+
+	/**
+	 * Stream the solutions of a job as one JSON array per line, using a
+	 * chunked response.
+	 */
+	private void streamSolutions(HttpExchange ex, SolveJob job)
+			throws IOException {
+		ex.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+		ex.sendResponseHeaders(200, 0);
+		OutputStream out = ex.getResponseBody();
+		try {
+			for (int i = 0; ; i++) {
+				List<List<Integer>> sol = job.awaitSolution(i);
+				if (sol == null) break;
+				out.write((SolveJob.solutionToJson(sol) + "\n").getBytes(UTF8));
+				out.flush();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		out.close();
+	}
+
+	private String statusJson() {
+		int finished = 0, known;
+		synchronized (jobs) {
+			known = jobs.size();
+			for (SolveJob j: jobs.values()) if (j.isFinished()) finished++;
+		}
+		return "{\"workers\":" + workers.getMaximumPoolSize()
+				+ ",\"running\":" + workers.getActiveCount()
+				+ ",\"queued\":" + workers.getQueue().size()
+				+ ",\"queueCapacity\":" + (workers.getQueue().size()
+						+ workers.getQueue().remainingCapacity())
+				+ ",\"accepted\":" + accepted.get()
+				+ ",\"rejected\":" + rejected.get()
+				+ ",\"jobs\":" + known
+				+ ",\"finished\":" + finished + "}";
+	}
+
+	/**
+	 * Forget the oldest finished jobs beyond KEEP_FINISHED, or while the
+	 * finished jobs keep more than KEEP_SOLUTIONS solutions. Running jobs
+	 * keep at most SolveJob.MAX_KEPT each. Caller holds the jobs lock.
+	 */
+	private void trimFinished() {
+		int finished = 0;
+		long kept = 0;
+		for (SolveJob j: jobs.values()) {
+			if (j.isFinished()) {
+				finished++;
+				kept += j.keptSolutions();
+			}
+		}
+		Iterator<SolveJob> it = jobs.values().iterator();
+		while ((finished > KEEP_FINISHED || kept > KEEP_SOLUTIONS)
+				&& it.hasNext()) {
+			SolveJob j = it.next();
+			if (j.isFinished()) {
+				it.remove();
+				finished--;
+				kept -= j.keptSolutions();
+			}
+		}
+	}
+
+	private static void send(HttpExchange ex, int code, String json)
+			throws IOException {
+		byte[] b = (json + "\n").getBytes(UTF8);
+		ex.getResponseHeaders().set("Content-Type", "application/json");
+		ex.sendResponseHeaders(code, b.length);
+		OutputStream out = ex.getResponseBody();
+		out.write(b);
+		out.close();
+	}
+
+	private static String error(String msg) {
+		return "{\"error\":\"" + msg + "\"}";
+	}
+
+	/**
+	 * Read a request body.
+	 * @param in
+	 * @return the text, or null if it is larger than MAX_PUZZLE
+	 * @throws IOException
+	 */
+	private static String readBody(InputStream in) throws IOException {
+		ByteArrayOutputStream buf = new ByteArrayOutputStream();
+		byte[] b = new byte[8192];
+		int n;
+		while ((n = in.read(b)) > 0) {
+			buf.write(b, 0, n);
+			if (buf.size() > MAX_PUZZLE) return null;
+		}
+		return new String(buf.toByteArray(), UTF8);
+	}
+
+	private static Map<String, String> parseQuery(URI uri) {
+		Map<String, String> q = new HashMap<String, String>();
+		String s = uri.getRawQuery();
+		if (s == null) return q;
+		for (String kv: s.split("&")) {
+			int i = kv.indexOf('=');
+			try {
+				if (i < 0) q.put(URLDecoder.decode(kv, "UTF-8"), "true");
+				else q.put(URLDecoder.decode(kv.substring(0, i), "UTF-8"),
+						URLDecoder.decode(kv.substring(i + 1), "UTF-8"));
+			} catch (IOException e) {
+				/* UTF-8 is always supported */
+			}
+		}
+		return q;
+	}
+
+	private static String value(Map<String, String> q, String k, String d) {
+		String v = q.get(k);
+		return v != null ? v : d;
+	}
+
+	/**
+	 * Start a server.
+	 * @param args - [port [threads [queue size]]]
+	 * @throws IOException
+	 */
+	public static void main(String args[]) throws IOException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+		int threads = args.length > 1 ? Integer.parseInt(args[1])
+				: Runtime.getRuntime().availableProcessors();
+		int queue = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+		SolveServer s = new SolveServer(port, threads, queue);
+		s.start();
+		System.out.println("Solve server on http://localhost:" + s.getPort()
+				+ " with " + threads + " workers, queue " + queue);
+	}
+
+}
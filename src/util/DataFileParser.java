@@ -28,10 +28,41 @@ public class DataFileParser {
 	private static char S = ' ';
 	private String filePath = " ";
 
+	/** Puzzle text given directly, null if the puzzle is read from file */
+	private String puzzleText = null;
+
 	public DataFileParser(String n) {
 		filePath = n;
 	}
 
+	/**
+	 * Create a parser on puzzle text which is already in memory.
+	 *
+	 * @param text
+	 * @return
+	 */
+	public static DataFileParser fromText(String text) {
+		DataFileParser dfp = new DataFileParser(" ");
+		dfp.puzzleText = text;
+		return dfp;
+	}
+
+	/**
+	 * Read the whole puzzle file as text, lines are joined with '\n'.
+	 *
+	 * @param path
+	 * @return the puzzle text, or null if the file cannot be read.
+	 */
+	public static String readPuzzleText(String path) {
+		if (!new File(path).isFile()) return null;
+		String[] lines = new DataFileParser(path).readPuzzleFile();
+		StringBuilder sb = new StringBuilder();
+		for (String line: lines) {
+			sb.append(line).append('\n');
+		}
+		return sb.toString();
+	}
+
 	/**
 	 * Read puzzle file and return a String array.
 	 *
@@ -39,6 +70,9 @@ public class DataFileParser {
 	 * @return String array represents the tiles and a board.
 	 */
 	private String[] readPuzzleFile() {
+		if (puzzleText != null) {
+			return puzzleText.split("\r?\n");
+		}
 		File f = new File(filePath);
 		FileReader fr;
 		try {